@@ -1,14 +1,149 @@
 package com.chess.core;
 
+import java.util.Arrays;
+
 public class Board {
     private Piece[][] board = new Piece[8][8];
-    private Game game;
+
+    // Bitboard view of the position, kept in sync with the array by setPiece.
+    // Square index is row * 8 + col, so bit 0 is a8 and bit 63 is h1.
+    private final long[] bitboards = new long[12]; // indexed by Piece.getIndex()
+    private final long[] colorOccupancy = new long[2]; // 0 = white, 1 = black
+    private long occupied;
+
+    // Cached king squares (0 = white, 1 = black), -1 while a side has no king
+    private final int[] kingSquares = { -1, -1 };
+
+    // Number of pieces of each kind, indexed by Piece.getIndex(), kept up to date by
+    // setPiece so captures and promotions adjust them without a board scan
+    private final int[] pieceCounts = new int[12];
+    private int phase; // sum of PHASE_WEIGHTS over all pieces, 0..TOTAL_PHASE
+
+    // Material plus piece-square sums (White minus Black) for each game phase, kept up
+    // to date by setPiece from PieceSquareTables
+    private int midgameScore;
+    private int endgameScore;
+
+    // Game phase weight of each piece type: minor 1, rook 2, queen 4
+    private static final int[] PHASE_WEIGHTS = { 0, 1, 1, 2, 4, 0 };
+    public static final int TOTAL_PHASE = 24;
+
+    private static final long LIGHT_SQUARES = 0xAA55AA55AA55AA55L; // a8 (bit 0) is light
+
+    private final int[] seeGain = new int[32];
+
+    // Castling rights bit flags
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    // Rights kept when a piece moves from or to a square: touching a king or rook
+    // home square loses the matching rights
+    private static final int[] CASTLING_MASK = new int[64];
+
+    // FEN letter of each piece, indexed by Piece.getIndex()
+    private static final String FEN_PIECES = "PNBRQKpnbrqk";
+
+    static {
+        Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+        CASTLING_MASK[0] = ~BLACK_QUEENSIDE & ALL_CASTLING; // a8
+        CASTLING_MASK[4] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & ALL_CASTLING; // e8
+        CASTLING_MASK[7] = ~BLACK_KINGSIDE & ALL_CASTLING; // h8
+        CASTLING_MASK[56] = ~WHITE_QUEENSIDE & ALL_CASTLING; // a1
+        CASTLING_MASK[60] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & ALL_CASTLING; // e1
+        CASTLING_MASK[63] = ~WHITE_KINGSIDE & ALL_CASTLING; // h1
+    }
+
+    // Position state covered by the Zobrist key
+    private boolean whiteToMove;
+    private int castlingRights;
+    private int enPassantSquare; // square behind a pawn that just advanced two, if it can be taken en passant, or -1
+    private long hashKey;
+
+    // Clocks: plies since the last capture or pawn move, and the FEN fullmove number
+    private int halfmoveClock;
+    private int fullmoveNumber;
+
+    // Everything makeMove changes that cannot be recomputed when the move is undone
+    private static class UndoState {
+        int move;
+        Piece movedPiece;
+        Piece capturedPiece;
+        int capturedSquare;
+        int castlingRights;
+        int enPassantSquare;
+        int halfmoveClock;
+        // Reusable promotion pieces for this stack slot, indexed by promotion type and
+        // colour, so promoting in search does not allocate
+        final Piece[] promotionPieces = new Piece[8];
+    }
+
+    private UndoState[] undoStack = new UndoState[256];
+    private int undoCount;
+
+    // Hash keys of the positions before each move played, oldest first, for repetition
+    // detection. Kept apart from the undo stack so snapshots can carry it.
+    private long[] keyHistory = new long[256];
+    private int keyCount;
+
     private Move lastMove; // Track the last move made
 
     public Board() {
+        for (int i = 0; i < undoStack.length; i++) {
+            undoStack[i] = new UndoState();
+        }
         initializeBoard();
     }
 
+    // Copy of the position with its own pieces, used by snapshot()
+    private Board(Board source) {
+        for (int i = 0; i < undoStack.length; i++) {
+            undoStack[i] = new UndoState();
+        }
+        long pieces = source.occupied;
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            Piece piece = source.getPiece(square);
+            Piece copy = createPiece(piece.getType(), piece.isWhite());
+            copy.setPosition(square / 8, square % 8);
+            board[square / 8][square % 8] = copy;
+        }
+        System.arraycopy(source.bitboards, 0, bitboards, 0, bitboards.length);
+        System.arraycopy(source.colorOccupancy, 0, colorOccupancy, 0, colorOccupancy.length);
+        System.arraycopy(source.kingSquares, 0, kingSquares, 0, kingSquares.length);
+        System.arraycopy(source.pieceCounts, 0, pieceCounts, 0, pieceCounts.length);
+        phase = source.phase;
+        midgameScore = source.midgameScore;
+        endgameScore = source.endgameScore;
+        occupied = source.occupied;
+
+        whiteToMove = source.whiteToMove;
+        castlingRights = source.castlingRights;
+        enPassantSquare = source.enPassantSquare;
+        hashKey = source.hashKey;
+        halfmoveClock = source.halfmoveClock;
+        fullmoveNumber = source.fullmoveNumber;
+        lastMove = source.lastMove;
+
+        // Only positions since the last irreversible move can repeat
+        int keep = Math.min(source.keyCount, halfmoveClock);
+        if (keep > keyHistory.length) {
+            keyHistory = new long[keep * 2];
+        }
+        System.arraycopy(source.keyHistory, source.keyCount - keep, keyHistory, 0, keep);
+        keyCount = keep;
+    }
+
+    // Independent copy of the current position that can be searched on another thread
+    // while this board keeps changing. It has no move history (unmakeMove cannot go past
+    // the snapshot) and no link back to the Game.
+    public Board snapshot() {
+        return new Board(this);
+    }
+
     public Move getLastMove() {
         return lastMove;
     }
@@ -17,43 +152,68 @@ public class Board {
         this.lastMove = move;
     }
 
-    public void setGame(Game game) {
-        this.game = game;
-    }
-
     public void initializeBoard() {
-        // White pieces
-        board[0][0] = new Rook(false, 0, 0);
-        board[0][1] = new Knight(false, 0, 1);
-        board[0][2] = new Bishop(false, 0, 2);
-        board[0][3] = new Queen(false, 0, 3);
-        board[0][4] = new King(false, 0, 4);
-        board[0][5] = new Bishop(false, 0, 5);
-        board[0][6] = new Knight(false, 0, 6);
-        board[0][7] = new Rook(false, 0, 7);
+        clear();
+
+        // Black pieces
+        setPiece(0, 0, new Rook(false, 0, 0));
+        setPiece(0, 1, new Knight(false, 0, 1));
+        setPiece(0, 2, new Bishop(false, 0, 2));
+        setPiece(0, 3, new Queen(false, 0, 3));
+        setPiece(0, 4, new King(false, 0, 4));
+        setPiece(0, 5, new Bishop(false, 0, 5));
+        setPiece(0, 6, new Knight(false, 0, 6));
+        setPiece(0, 7, new Rook(false, 0, 7));
         for (int col = 0; col < 8; col++) {
-            board[1][col] = new Pawn(false, 1, col);
+            setPiece(1, col, new Pawn(false, 1, col));
         }
 
-        // Black pieces
+        // White pieces
         for (int col = 0; col < 8; col++) {
-            board[6][col] = new Pawn(true, 6, col);
-        }
-        board[7][0] = new Rook(true, 7, 0);
-        board[7][1] = new Knight(true, 7, 1);
-        board[7][2] = new Bishop(true, 7, 2);
-        board[7][3] = new Queen(true, 7, 3);
-        board[7][4] = new King(true, 7, 4);
-        board[7][5] = new Bishop(true, 7, 5);
-        board[7][6] = new Knight(true, 7, 6);
-        board[7][7] = new Rook(true, 7, 7);
-
-        // Empty squares
-        for (int row = 2; row <= 5; row++) {
+            setPiece(6, col, new Pawn(true, 6, col));
+        }
+        setPiece(7, 0, new Rook(true, 7, 0));
+        setPiece(7, 1, new Knight(true, 7, 1));
+        setPiece(7, 2, new Bishop(true, 7, 2));
+        setPiece(7, 3, new Queen(true, 7, 3));
+        setPiece(7, 4, new King(true, 7, 4));
+        setPiece(7, 5, new Bishop(true, 7, 5));
+        setPiece(7, 6, new Knight(true, 7, 6));
+        setPiece(7, 7, new Rook(true, 7, 7));
+
+        setCastlingRights(ALL_CASTLING);
+    }
+
+    private void clear() {
+        for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
                 board[row][col] = null;
             }
         }
+        for (int i = 0; i < bitboards.length; i++) {
+            bitboards[i] = 0L;
+        }
+        colorOccupancy[0] = 0L;
+        colorOccupancy[1] = 0L;
+        occupied = 0L;
+        kingSquares[0] = -1;
+        kingSquares[1] = -1;
+        for (int i = 0; i < pieceCounts.length; i++) {
+            pieceCounts[i] = 0;
+        }
+        phase = 0;
+        midgameScore = 0;
+        endgameScore = 0;
+
+        whiteToMove = true;
+        castlingRights = 0;
+        enPassantSquare = -1;
+        hashKey = Zobrist.CASTLING[0];
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        undoCount = 0;
+        keyCount = 0;
+        lastMove = null;
     }
 
     public Piece getPiece(int row, int col) {
@@ -63,248 +223,523 @@ public class Board {
         return null;
     }
 
+    // Piece on a square index (row * 8 + col), as produced by iterating a bitboard
+    public Piece getPiece(int square) {
+        return board[square >>> 3][square & 7];
+    }
+
     public boolean movePiece(Move move) {
-        int fromRow = move.getFromRow();
-        int fromCol = move.getFromCol();
-        int toRow = move.getToRow();
-        int toCol = move.getToCol();
-        Piece piece = getPiece(fromRow, fromCol);
+        Piece piece = getPiece(move.getFromRow(), move.getFromCol());
 
-        if (piece == null || !piece.getValidMoves(this).contains(move)) {
+        if (piece == null) {
+            return false;
+        }
+        MoveList validMoves = new MoveList(32);
+        piece.getValidMoves(this, validMoves);
+        if (!validMoves.contains(move.toPacked())) {
             return false;
         }
 
-        board[toRow][toCol] = piece;
-        board[fromRow][fromCol] = null;
-        piece.setPosition(toRow, toCol);
-        piece.onMove(); // Notify piece that it has moved
+        makeMove(move.toPacked());
         lastMove = move; // Store the last move
         return true;
     }
 
-    public void setPiece(int row, int col, Piece piece) {
-        if (row >= 0 && row < 8 && col >= 0 && col < 8) {
-            board[row][col] = piece;
-            if (piece != null) {
-                piece.setPosition(row, col);
+    // Play a pseudo-legal packed move, handling captures, en passant, castling and
+    // promotion. The previous state is pushed on the undo stack for unmakeMove.
+    public void makeMove(int move) {
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        int flag = Move.getFlag(move);
+        Piece piece = board[from / 8][from % 8];
+
+        if (undoCount == undoStack.length) {
+            growUndoStack();
+        }
+        UndoState undo = undoStack[undoCount++];
+        if (keyCount == keyHistory.length) {
+            keyHistory = Arrays.copyOf(keyHistory, keyHistory.length * 2);
+        }
+        keyHistory[keyCount++] = hashKey;
+        undo.move = move;
+        undo.movedPiece = piece;
+        undo.castlingRights = castlingRights;
+        undo.enPassantSquare = enPassantSquare;
+        undo.halfmoveClock = halfmoveClock;
+
+        // En passant captures the pawn beside the moving pawn, not on the target square
+        int capturedSquare = flag == Move.FLAG_EN_PASSANT ? (from / 8) * 8 + to % 8 : to;
+        Piece captured = board[capturedSquare / 8][capturedSquare % 8];
+        undo.capturedPiece = captured;
+        undo.capturedSquare = capturedSquare;
+        if (captured != null) {
+            setPiece(capturedSquare / 8, capturedSquare % 8, null);
+        }
+
+        setPiece(from / 8, from % 8, null);
+        if (Move.isPromotion(move)) {
+            setPiece(to / 8, to % 8, getPromotionPiece(undo, Move.getPromotionType(move), piece.isWhite()));
+        } else {
+            setPiece(to / 8, to % 8, piece);
+        }
+
+        if (flag == Move.FLAG_CASTLING) {
+            // Move the rook to the square the king passed over
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? to - 1 : to + 1;
+            Piece rook = board[rookFrom / 8][rookFrom % 8];
+            setPiece(rookFrom / 8, rookFrom % 8, null);
+            setPiece(rookTo / 8, rookTo % 8, rook);
+        }
+
+        // Only the last pawn to advance two squares can be captured en passant. The target
+        // is recorded only when an enemy pawn can actually make the capture, so positions
+        // that differ in nothing else hash (and repeat) as the same position.
+        boolean isPawn = piece instanceof Pawn;
+        int enPassantTarget = -1;
+        if (isPawn && Math.abs(to - from) == 16) {
+            int passed = (from + to) / 2;
+            if ((Attacks.pawn(piece.isWhite(), passed) & getBitboard(Piece.PAWN, !piece.isWhite())) != 0) {
+                enPassantTarget = passed;
             }
         }
+        setEnPassantSquare(enPassantTarget);
+
+        updateCastlingRights(from, to);
+        halfmoveClock = isPawn || captured != null ? 0 : halfmoveClock + 1;
+        if (!whiteToMove) {
+            fullmoveNumber++;
+        }
+        setWhiteToMove(!whiteToMove);
     }
 
-    public boolean isCheckmate(boolean isWhite) {
-        // First check if the king is in check
-        if (!isInCheck(isWhite)) {
-            return false;
+    // Take back the last move played with makeMove, restoring the position exactly
+    public void unmakeMove() {
+        UndoState undo = undoStack[--undoCount];
+        keyCount--;
+        int move = undo.move;
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        Piece piece = undo.movedPiece;
+
+        setWhiteToMove(!whiteToMove);
+        if (!whiteToMove) {
+            fullmoveNumber--;
         }
 
-        // Try all possible moves for all pieces of the current player
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = getPiece(row, col);
-                if (piece != null && piece.isWhite() == isWhite) {
-                    for (Move move : piece.getValidMoves(this)) {
-                        // Try the move
-                        Piece capturedPiece = getPiece(move.getToRow(), move.getToCol());
-                        Piece movingPiece = getPiece(move.getFromRow(), move.getFromCol());
-
-                        // Make temporary move
-                        setPiece(move.getToRow(), move.getToCol(), movingPiece);
-                        setPiece(move.getFromRow(), move.getFromCol(), null);
-
-                        // Check if king is still in check after this move
-                        boolean stillInCheck = isInCheck(isWhite);
-
-                        // Undo the move
-                        setPiece(move.getFromRow(), move.getFromCol(), movingPiece);
-                        setPiece(move.getToRow(), move.getToCol(), capturedPiece);
-
-                        // If we found a move that gets us out of check, it's not checkmate
-                        if (!stillInCheck) {
-                            return false;
-                        }
-                    }
-                }
-            }
+        if (Move.getFlag(move) == Move.FLAG_CASTLING) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? to - 1 : to + 1;
+            Piece rook = board[rookTo / 8][rookTo % 8];
+            setPiece(rookTo / 8, rookTo % 8, null);
+            setPiece(rookFrom / 8, rookFrom % 8, rook);
         }
 
-        // If we haven't found any legal moves to get out of check, it's checkmate
-        return true;
+        setPiece(to / 8, to % 8, null);
+        setPiece(from / 8, from % 8, piece);
+        if (undo.capturedPiece != null) {
+            setPiece(undo.capturedSquare / 8, undo.capturedSquare % 8, undo.capturedPiece);
+        }
+
+        setEnPassantSquare(undo.enPassantSquare);
+
+        setCastlingRights(undo.castlingRights);
+        halfmoveClock = undo.halfmoveClock;
     }
 
-    public boolean isSquareAttacked(int targetRow, int targetCol, boolean squareOwner) {
-        // Check for attacking pawns
-        int pawnDirection = squareOwner ? -1 : 1; // Direction pawns would come from - opposite of pawn's movement
-                                                  // direction
-        int[] pawnCols = { -1, 1 }; // Diagonal captures
-        for (int colOffset : pawnCols) {
-            int fromCol = targetCol + colOffset;
-            int fromRow = targetRow + pawnDirection;
-            if (fromRow >= 0 && fromRow < 8 && fromCol >= 0 && fromCol < 8) {
-                Piece piece = getPiece(fromRow, fromCol);
-                if (piece instanceof Pawn && piece.isWhite() != squareOwner) {
-                    return true;
-                }
-            }
+    // Pass the turn without moving (a null move), for null-move pruning in search. The
+    // halfmove clock restarts so repetition checks never look back across the null
+    // move. Take it back with unmakeNullMove.
+    public void makeNullMove() {
+        if (undoCount == undoStack.length) {
+            growUndoStack();
         }
+        UndoState undo = undoStack[undoCount++];
+        if (keyCount == keyHistory.length) {
+            keyHistory = Arrays.copyOf(keyHistory, keyHistory.length * 2);
+        }
+        keyHistory[keyCount++] = hashKey;
+        undo.move = 0;
+        undo.movedPiece = null;
+        undo.capturedPiece = null;
+        undo.castlingRights = castlingRights;
+        undo.enPassantSquare = enPassantSquare;
+        undo.halfmoveClock = halfmoveClock;
+
+        setEnPassantSquare(-1);
+        halfmoveClock = 0;
+        setWhiteToMove(!whiteToMove);
+    }
 
-        // Check for attacking knights
-        int[][] knightMoves = {
-                { -2, -1 }, { -2, 1 }, { -1, -2 }, { -1, 2 },
-                { 1, -2 }, { 1, 2 }, { 2, -1 }, { 2, 1 }
-        };
-        for (int[] move : knightMoves) {
-            int fromRow = targetRow + move[0];
-            int fromCol = targetCol + move[1];
-            if (fromRow >= 0 && fromRow < 8 && fromCol >= 0 && fromCol < 8) {
-                Piece piece = getPiece(fromRow, fromCol);
-                if (piece instanceof Knight && piece.isWhite() != squareOwner) {
-                    return true;
-                }
+    public void unmakeNullMove() {
+        UndoState undo = undoStack[--undoCount];
+        keyCount--;
+        setWhiteToMove(!whiteToMove);
+        setEnPassantSquare(undo.enPassantSquare);
+        halfmoveClock = undo.halfmoveClock;
+    }
+
+    // Packed move most recently played with makeMove, or 0 if there is none (or the last
+    // move was a null move)
+    public int getLastMadeMove() {
+        return undoCount == 0 ? 0 : undoStack[undoCount - 1].move;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    // How many earlier positions in the game equal the current one. Only positions with
+    // the same side to move since the last capture or pawn move are scanned.
+    public int getRepetitionCount() {
+        int count = 0;
+        int oldest = Math.max(0, keyCount - halfmoveClock);
+        for (int i = keyCount - 2; i >= oldest; i -= 2) {
+            if (keyHistory[i] == hashKey) {
+                count++;
             }
         }
+        return count;
+    }
 
-        // Check for attacking pieces in each direction (queen, rook, bishop)
-        int[][] directions = {
-                { -1, -1 }, { -1, 0 }, { -1, 1 },
-                { 0, -1 }, { 0, 1 },
-                { 1, -1 }, { 1, 0 }, { 1, 1 }
-        };
-
-        for (int[] dir : directions) {
-            int fromRow = targetRow + dir[0];
-            int fromCol = targetCol + dir[1];
-            while (fromRow >= 0 && fromRow < 8 && fromCol >= 0 && fromCol < 8) {
-                Piece piece = getPiece(fromRow, fromCol);
-                if (piece != null) {
-                    if (piece.isWhite() != squareOwner) {
-                        boolean isDiagonal = dir[0] != 0 && dir[1] != 0;
-                        boolean isStraight = dir[0] == 0 || dir[1] == 0;
-
-                        if (piece instanceof Queen ||
-                                (piece instanceof Rook && isStraight) ||
-                                (piece instanceof Bishop && isDiagonal) ||
-                                (piece instanceof King && Math.abs(fromRow - targetRow) <= 1
-                                        && Math.abs(fromCol - targetCol) <= 1)) {
-                            return true;
-                        }
-                    }
-                    break; // Stop checking this direction if we hit any piece
-                }
-                fromRow += dir[0];
-                fromCol += dir[1];
+    // True once the current position has occurred before
+    public boolean isRepetition() {
+        int oldest = Math.max(0, keyCount - halfmoveClock);
+        for (int i = keyCount - 2; i >= oldest; i -= 2) {
+            if (keyHistory[i] == hashKey) {
+                return true;
             }
         }
-
         return false;
     }
 
-    // Check if the king of the specified color is in check
-    public boolean isInCheck(boolean isWhite) {
-        // Find the king first
-        int kingRow = -1, kingCol = -1;
-        outer: for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = getPiece(row, col);
-                if (piece instanceof King && piece.isWhite() == isWhite) {
-                    kingRow = row;
-                    kingCol = col;
-                    break outer;
-                }
-            }
+    // Fifty moves (100 plies) without a capture or pawn move
+    public boolean isFiftyMoveDraw() {
+        return halfmoveClock >= 100;
+    }
+
+    private Piece getPromotionPiece(UndoState undo, int type, boolean isWhite) {
+        int slot = type - Piece.KNIGHT + (isWhite ? 0 : 4);
+        Piece promoted = undo.promotionPieces[slot];
+        // Never hand out a piece that is still standing on the board
+        if (promoted == null || isOnBoard(promoted)) {
+            promoted = createPiece(type, isWhite);
+            undo.promotionPieces[slot] = promoted;
         }
+        return promoted;
+    }
 
-        if (kingRow == -1 || kingCol == -1)
-            return false;
+    private boolean isOnBoard(Piece piece) {
+        int row = piece.getRow();
+        int col = piece.getCol();
+        return row >= 0 && row < 8 && col >= 0 && col < 8 && board[row][col] == piece;
+    }
 
-        return isSquareAttacked(kingRow, kingCol, isWhite);
+    private static Piece createPiece(int type, boolean isWhite) {
+        switch (type) {
+            case Piece.PAWN:
+                return new Pawn(isWhite, -1, -1);
+            case Piece.KNIGHT:
+                return new Knight(isWhite, -1, -1);
+            case Piece.BISHOP:
+                return new Bishop(isWhite, -1, -1);
+            case Piece.ROOK:
+                return new Rook(isWhite, -1, -1);
+            case Piece.QUEEN:
+                return new Queen(isWhite, -1, -1);
+            default:
+                return new King(isWhite, -1, -1);
+        }
     }
 
-    public boolean isPinned(Piece piece) {
-        if (piece == null)
-            return false;
+    private void growUndoStack() {
+        UndoState[] grown = Arrays.copyOf(undoStack, undoStack.length * 2);
+        for (int i = undoStack.length; i < grown.length; i++) {
+            grown[i] = new UndoState();
+        }
+        undoStack = grown;
+    }
 
-        // Find the king of the same color
-        King king = null;
-        int kingRow = -1, kingCol = -1;
+    public void setPiece(int row, int col, Piece piece) {
+        if (row >= 0 && row < 8 && col >= 0 && col < 8) {
+            long bit = 1L << (row * 8 + col);
+            Piece oldPiece = board[row][col];
+            if (oldPiece != null) {
+                bitboards[oldPiece.getIndex()] &= ~bit;
+                colorOccupancy[oldPiece.isWhite() ? 0 : 1] &= ~bit;
+                occupied &= ~bit;
+                hashKey ^= Zobrist.PIECE_SQUARE[oldPiece.getIndex()][row * 8 + col];
+                pieceCounts[oldPiece.getIndex()]--;
+                phase -= PHASE_WEIGHTS[oldPiece.getType()];
+                midgameScore -= PieceSquareTables.MIDGAME[oldPiece.getIndex()][row * 8 + col];
+                endgameScore -= PieceSquareTables.ENDGAME[oldPiece.getIndex()][row * 8 + col];
+                if (oldPiece.getType() == Piece.KING) {
+                    kingSquares[oldPiece.isWhite() ? 0 : 1] = -1;
+                }
+            }
 
-        outer: for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece p = getPiece(row, col);
-                if (p instanceof King && p.isWhite() == piece.isWhite()) {
-                    king = (King) p;
-                    kingRow = row;
-                    kingCol = col;
-                    break outer;
+            board[row][col] = piece;
+            if (piece != null) {
+                piece.setPosition(row, col);
+                bitboards[piece.getIndex()] |= bit;
+                colorOccupancy[piece.isWhite() ? 0 : 1] |= bit;
+                occupied |= bit;
+                hashKey ^= Zobrist.PIECE_SQUARE[piece.getIndex()][row * 8 + col];
+                pieceCounts[piece.getIndex()]++;
+                phase += PHASE_WEIGHTS[piece.getType()];
+                midgameScore += PieceSquareTables.MIDGAME[piece.getIndex()][row * 8 + col];
+                endgameScore += PieceSquareTables.ENDGAME[piece.getIndex()][row * 8 + col];
+                if (piece.getType() == Piece.KING) {
+                    kingSquares[piece.isWhite() ? 0 : 1] = row * 8 + col;
                 }
             }
         }
+    }
 
-        if (king == null)
-            return false;
+    // 64-bit Zobrist key of the current position, maintained incrementally
+    public long getHashKey() {
+        return hashKey;
+    }
 
-        // Determine if the piece is between the king and an attacking piece
-        int pieceRow = piece.getRow();
-        int pieceCol = piece.getCol();
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
 
-        // Check if piece is on same rank, file, or diagonal as king
-        int rowDiff = kingRow - pieceRow;
-        int colDiff = kingCol - pieceCol;
+    public void setWhiteToMove(boolean whiteToMove) {
+        if (this.whiteToMove != whiteToMove) {
+            this.whiteToMove = whiteToMove;
+            hashKey ^= Zobrist.BLACK_TO_MOVE;
+        }
+    }
 
-        // Not in line with king
-        if (rowDiff != 0 && colDiff != 0 && Math.abs(rowDiff) != Math.abs(colDiff)) {
-            return false;
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public boolean hasCastlingRight(int right) {
+        return (castlingRights & right) != 0;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        hashKey ^= Zobrist.CASTLING[this.castlingRights] ^ Zobrist.CASTLING[castlingRights];
+        this.castlingRights = castlingRights;
+    }
+
+    // Drop the castling rights lost by a move between these squares (row * 8 + col)
+    public void updateCastlingRights(int fromSquare, int toSquare) {
+        setCastlingRights(castlingRights & CASTLING_MASK[fromSquare] & CASTLING_MASK[toSquare]);
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int square) {
+        if (enPassantSquare != -1) {
+            hashKey ^= Zobrist.EN_PASSANT_FILE[enPassantSquare % 8];
         }
+        enPassantSquare = square;
+        if (square != -1) {
+            hashKey ^= Zobrist.EN_PASSANT_FILE[square % 8];
+        }
+    }
 
-        // Direction from piece to king (we want to look in the opposite direction for
-        // attackers)
-        int rowDir = rowDiff == 0 ? 0 : rowDiff / Math.abs(rowDiff);
-        int colDir = colDiff == 0 ? 0 : colDiff / Math.abs(colDiff);
+    // Bitboard of one piece kind, indexed like Piece.getIndex()
+    public long getBitboard(int pieceIndex) {
+        return bitboards[pieceIndex];
+    }
 
-        // Verify that the line between the piece and king is clear FIRST
-        int checkRow = pieceRow + rowDir;
-        int checkCol = pieceCol + colDir;
-        while (checkRow != kingRow || checkCol != kingCol) {
-            if (getPiece(checkRow, checkCol) != null) {
-                // Found a piece between our piece and the king, not a pin
-                return false;
-            }
-            checkRow += rowDir;
-            checkCol += colDir;
+    public long getBitboard(int pieceType, boolean isWhite) {
+        return bitboards[isWhite ? pieceType : pieceType + Piece.COLOR_OFFSET];
+    }
+
+    public long getOccupancy(boolean isWhite) {
+        return colorOccupancy[isWhite ? 0 : 1];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    // Square of the given side's king (row * 8 + col), or -1 if it is not on the board
+    public int getKingSquare(boolean isWhite) {
+        return kingSquares[isWhite ? 0 : 1];
+    }
+
+    // Number of pieces of one colour, king included
+    public int getPieceCount(boolean isWhite) {
+        return Long.bitCount(colorOccupancy[isWhite ? 0 : 1]);
+    }
+
+    // Number of pieces of one type (Piece.PAWN..Piece.KING) and colour
+    public int getPieceCount(int pieceType, boolean isWhite) {
+        return pieceCounts[isWhite ? pieceType : pieceType + Piece.COLOR_OFFSET];
+    }
+
+    // Non-pawn material left on the board, from TOTAL_PHASE (opening) down to 0 (only
+    // kings and pawns)
+    public int getGamePhase() {
+        return Math.min(phase, TOTAL_PHASE);
+    }
+
+    // Material plus piece-square score (White minus Black, centipawns) with middlegame
+    // and endgame tables; blend them by getGamePhase() for a tapered evaluation
+    public int getMidgameScore() {
+        return midgameScore;
+    }
+
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    // Neither side can ever checkmate: bare kings, a single minor piece, or only
+    // bishops that all stand on squares of one colour
+    public boolean isInsufficientMaterial() {
+        int offset = Piece.COLOR_OFFSET;
+        if (pieceCounts[Piece.PAWN] + pieceCounts[Piece.PAWN + offset] != 0
+                || pieceCounts[Piece.ROOK] + pieceCounts[Piece.ROOK + offset] != 0
+                || pieceCounts[Piece.QUEEN] + pieceCounts[Piece.QUEEN + offset] != 0) {
+            return false;
         }
+        int knights = pieceCounts[Piece.KNIGHT] + pieceCounts[Piece.KNIGHT + offset];
+        int bishops = pieceCounts[Piece.BISHOP] + pieceCounts[Piece.BISHOP + offset];
+        if (knights + bishops <= 1) {
+            return true;
+        }
+        if (knights != 0) {
+            return false;
+        }
+        long allBishops = bitboards[Piece.BISHOP] | bitboards[Piece.BISHOP + offset];
+        return (allBishops & LIGHT_SQUARES) == 0 || (allBishops & ~LIGHT_SQUARES) == 0;
+    }
 
-        // Look for attacking piece in the direction away from the king
-        int row = pieceRow - rowDir;
-        int col = pieceCol - colDir;
+    public boolean isCheckmate(boolean isWhite) {
+        // First check if the king is in check
+        if (!isInCheck(isWhite)) {
+            return false;
+        }
 
-        while (row >= 0 && row < 8 && col >= 0 && col < 8) {
-            Piece p = getPiece(row, col);
-            if (p != null) {
-                if (p.isWhite() != piece.isWhite()) {
-                    // Found opponent's piece, check if it can pin in this direction
-                    boolean isDiagonal = Math.abs(rowDir) == Math.abs(colDir);
-                    boolean isStraight = rowDir == 0 || colDir == 0;
+        // Checkmate if no legal move gets the king out of check
+        MoveList moves = new MoveList();
+        LegalMoveGenerator.generate(this, isWhite, moves);
+        return moves.isEmpty();
+    }
 
-                    if (isStraight && (p instanceof Rook || p instanceof Queen)) {
-                        return true;
-                    }
-                    if (isDiagonal && (p instanceof Bishop || p instanceof Queen)) {
-                        return true;
-                    }
-                }
-                // Found any other piece, not a pin
+    public boolean isSquareAttacked(int targetRow, int targetCol, boolean squareOwner) {
+        return attackersTo(targetRow * 8 + targetCol, !squareOwner, occupied) != 0;
+    }
+
+    // Pieces of the attacking side that attack square, with sliders blocked by the given
+    // occupancy (callers can remove pieces from it, e.g. the king that is moving away)
+    public long attackersTo(int square, boolean attackerIsWhite, long occupancy) {
+        int offset = attackerIsWhite ? 0 : Piece.COLOR_OFFSET;
+        long queens = bitboards[Piece.QUEEN + offset];
+        // A pawn of the defending colour on square attacks exactly the squares from which
+        // attacking pawns reach it
+        return (Attacks.pawn(!attackerIsWhite, square) & bitboards[Piece.PAWN + offset])
+                | (Attacks.knight(square) & bitboards[Piece.KNIGHT + offset])
+                | (Attacks.king(square) & bitboards[Piece.KING + offset])
+                | (Attacks.bishop(square, occupancy) & (bitboards[Piece.BISHOP + offset] | queens))
+                | (Attacks.rook(square, occupancy) & (bitboards[Piece.ROOK + offset] | queens));
+    }
+
+    // Static exchange evaluation: the material (in centipawns, negative for a loss) the
+    // side making the move wins if both sides then keep recapturing on the target square
+    // with their least valuable attacker, each free to stop when that is better. Sliders
+    // uncovered behind a capturing piece join in; pins are ignored.
+    public int see(int move) {
+        int from = Move.getFrom(move);
+        int to = Move.getTo(move);
+        int flag = Move.getFlag(move);
+        Piece mover = getPiece(from);
+        if (mover == null || flag == Move.FLAG_CASTLING) {
+            return 0;
+        }
+
+        long occ = occupied & ~(1L << from);
+        int[] gain = seeGain;
+        int onSquare = Piece.getValue(mover.getType()); // value of the piece now standing on to
+        if (flag == Move.FLAG_EN_PASSANT) {
+            gain[0] = Piece.getValue(Piece.PAWN);
+            occ &= ~(1L << ((from / 8) * 8 + to % 8));
+        } else {
+            Piece victim = getPiece(to);
+            gain[0] = victim == null ? 0 : Piece.getValue(victim.getType());
+        }
+        if (Move.isPromotion(move)) {
+            onSquare = Piece.getValue(Move.getPromotionType(move));
+            gain[0] += onSquare - Piece.getValue(Piece.PAWN);
+        }
+
+        long diagonal = bitboards[Piece.BISHOP] | bitboards[Piece.BISHOP + Piece.COLOR_OFFSET]
+                | bitboards[Piece.QUEEN] | bitboards[Piece.QUEEN + Piece.COLOR_OFFSET];
+        long straight = bitboards[Piece.ROOK] | bitboards[Piece.ROOK + Piece.COLOR_OFFSET]
+                | bitboards[Piece.QUEEN] | bitboards[Piece.QUEEN + Piece.COLOR_OFFSET];
+        long attackers = (attackersTo(to, true, occ) | attackersTo(to, false, occ)) & occ;
+
+        boolean side = !mover.isWhite();
+        int depth = 0;
+        while (depth < gain.length - 1) {
+            long own = attackers & colorOccupancy[side ? 0 : 1];
+            if (own == 0) {
+                break;
+            }
+            int type = Piece.PAWN;
+            long pieces = own & getBitboard(type, side);
+            while (pieces == 0) {
+                pieces = own & getBitboard(++type, side);
+            }
+            // The king may only recapture when the square is no longer defended
+            if (type == Piece.KING && (attackers & colorOccupancy[side ? 1 : 0]) != 0) {
                 break;
             }
-            row -= rowDir;
-            col -= colDir;
+
+            depth++;
+            gain[depth] = onSquare - gain[depth - 1];
+            onSquare = Piece.getValue(type);
+
+            occ &= ~(pieces & -pieces);
+            if (type == Piece.PAWN || type == Piece.BISHOP || type == Piece.QUEEN) {
+                attackers |= Attacks.bishop(to, occ) & diagonal;
+            }
+            if (type == Piece.ROOK || type == Piece.QUEEN) {
+                attackers |= Attacks.rook(to, occ) & straight;
+            }
+            attackers &= occ;
+            side = !side;
         }
 
-        return false;
+        // Each side only continues the exchange when it does not lose by doing so
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    // Check if the king of the specified color is in check
+    public boolean isInCheck(boolean isWhite) {
+        int kingSquare = getKingSquare(isWhite);
+        if (kingSquare == -1)
+            return false;
+
+        return isSquareAttacked(kingSquare / 8, kingSquare % 8, isWhite);
     }
 
     // Generate FEN (Forsyth-Edwards Notation) string for Stockfish
     public String toFEN() {
-        StringBuilder fen = new StringBuilder();
+        StringBuilder fen = new StringBuilder(90);
+        appendFEN(fen);
+        return fen.toString();
+    }
 
+    // Write the FEN of this position into an existing buffer, without building any
+    // intermediate strings
+    public void appendFEN(StringBuilder fen) {
         // Board position
         for (int row = 0; row < 8; row++) {
             int emptyCount = 0;
@@ -314,77 +749,225 @@ public class Board {
                     emptyCount++;
                 } else {
                     if (emptyCount > 0) {
-                        fen.append(emptyCount);
+                        fen.append((char) ('0' + emptyCount));
                         emptyCount = 0;
                     }
-                    String symbol = piece.getSymbol();
-                    char pieceChar = symbol.charAt(1);
-                    fen.append(piece.isWhite() ? pieceChar : Character.toLowerCase(pieceChar));
+                    fen.append(FEN_PIECES.charAt(piece.getIndex()));
                 }
             }
             if (emptyCount > 0) {
-                fen.append(emptyCount);
+                fen.append((char) ('0' + emptyCount));
             }
             if (row < 7) {
-                fen.append("/");
+                fen.append('/');
             }
         }
 
-        // Add active color based on game state
-        fen.append(game != null && game.isWhiteTurn() ? " w" : " b");
+        // Add active color
+        fen.append(whiteToMove ? " w " : " b ");
 
         // Add castling availability
-        StringBuilder castling = new StringBuilder();
-
-        // White castling
-        Piece whiteKing = getPiece(7, 4);
-        if (whiteKing instanceof King && !((King) whiteKing).hasMoved()) {
-            Piece kingSideRook = getPiece(7, 7);
-            if (kingSideRook instanceof Rook && !((Rook) kingSideRook).hasMoved()) {
-                castling.append("K");
-            }
-            Piece queenSideRook = getPiece(7, 0);
-            if (queenSideRook instanceof Rook && !((Rook) queenSideRook).hasMoved()) {
-                castling.append("Q");
-            }
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & WHITE_KINGSIDE) != 0)
+                fen.append('K');
+            if ((castlingRights & WHITE_QUEENSIDE) != 0)
+                fen.append('Q');
+            if ((castlingRights & BLACK_KINGSIDE) != 0)
+                fen.append('k');
+            if ((castlingRights & BLACK_QUEENSIDE) != 0)
+                fen.append('q');
+        }
+
+        // Add en passant target square
+        fen.append(' ');
+        if (enPassantSquare == -1) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + enPassantSquare % 8)).append((char) ('8' - enPassantSquare / 8));
+        }
+
+        // Add halfmove clock and fullmove number
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+    }
+
+    // Build a board from a FEN string
+    public static Board fromFEN(String fen) {
+        return new Board(fen);
+    }
+
+    // Board set up from FEN only, without building the initial position first
+    private Board(CharSequence fen) {
+        for (int i = 0; i < undoStack.length; i++) {
+            undoStack[i] = new UndoState();
         }
+        loadFEN(fen);
+    }
 
-        // Black castling
-        Piece blackKing = getPiece(0, 4);
-        if (blackKing instanceof King && !((King) blackKing).hasMoved()) {
-            Piece kingSideRook = getPiece(0, 7);
-            if (kingSideRook instanceof Rook && !((Rook) kingSideRook).hasMoved()) {
-                castling.append("k");
+    // Replace the position on this board with the one described by a FEN string. The
+    // clock fields may be omitted. Castling rights whose king or rook is not on its home
+    // square are dropped. Throws IllegalArgumentException on malformed input and on
+    // illegal positions (not one king per side, or the side not to move in check).
+    public void loadFEN(CharSequence fen) {
+        clear();
+        int length = fen.length();
+        int i = 0;
+
+        // Piece placement
+        int row = 0;
+        int col = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 8) {
+                    throw invalidFEN(fen, "rank " + (8 - row) + " does not have 8 squares");
+                }
+                row++;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int index = FEN_PIECES.indexOf(c);
+                if (index < 0) {
+                    throw invalidFEN(fen, "unknown piece '" + c + "'");
+                }
+                if (row > 7 || col > 7) {
+                    throw invalidFEN(fen, "piece placement runs off the board");
+                }
+                boolean isWhite = index < Piece.COLOR_OFFSET;
+                setPiece(row, col, createPiece(isWhite ? index : index - Piece.COLOR_OFFSET, isWhite));
+                col++;
             }
-            Piece queenSideRook = getPiece(0, 0);
-            if (queenSideRook instanceof Rook && !((Rook) queenSideRook).hasMoved()) {
-                castling.append("q");
+        }
+        if (row != 7 || col != 8) {
+            throw invalidFEN(fen, "piece placement does not cover 8 ranks");
+        }
+
+        // Active color
+        i = skipSpaces(fen, i);
+        if (i >= length || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) {
+            throw invalidFEN(fen, "missing active color");
+        }
+        setWhiteToMove(fen.charAt(i++) == 'w');
+
+        // Move generation relies on exactly one king per side, and the side that just moved
+        // cannot have left its king in check
+        if (getPieceCount(Piece.KING, true) != 1 || getPieceCount(Piece.KING, false) != 1) {
+            throw invalidFEN(fen, "each side must have exactly one king");
+        }
+        if (isInCheck(!whiteToMove)) {
+            throw invalidFEN(fen, "the side not to move is in check");
+        }
+
+        // Castling availability
+        i = skipSpaces(fen, i);
+        int rights = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            switch (fen.charAt(i)) {
+                case 'K':
+                    rights |= WHITE_KINGSIDE;
+                    break;
+                case 'Q':
+                    rights |= WHITE_QUEENSIDE;
+                    break;
+                case 'k':
+                    rights |= BLACK_KINGSIDE;
+                    break;
+                case 'q':
+                    rights |= BLACK_QUEENSIDE;
+                    break;
+                case '-':
+                    break;
+                default:
+                    throw invalidFEN(fen, "bad castling field");
             }
         }
+        setCastlingRights(rights & castlingRightsInPlace());
 
-        if (castling.length() == 0) {
-            fen.append(" -");
+        // En passant target square
+        i = skipSpaces(fen, i);
+        if (i < length && fen.charAt(i) != '-') {
+            if (i + 1 >= length) {
+                throw invalidFEN(fen, "bad en passant square");
+            }
+            int epCol = fen.charAt(i) - 'a';
+            int epRow = '8' - fen.charAt(i + 1);
+            // The square behind a pawn that has just moved two: rank 6 if white is to move
+            if (epCol < 0 || epCol > 7 || epRow != (whiteToMove ? 2 : 5)) {
+                throw invalidFEN(fen, "bad en passant square");
+            }
+            // As in makeMove, keep the target only if a pawn of the side to move can capture
+            // there, so the hash matches the same position reached by playing moves
+            int square = epRow * 8 + epCol;
+            if ((Attacks.pawn(!whiteToMove, square) & getBitboard(Piece.PAWN, whiteToMove)) != 0) {
+                setEnPassantSquare(square);
+            }
+            i += 2;
         } else {
-            fen.append(" ").append(castling);
+            i++;
         }
 
-        // Add en passant target square
-        String enPassant = "-";
-        if (lastMove != null) {
-            Piece piece = getPiece(lastMove.getToRow(), lastMove.getToCol());
-            if (piece instanceof Pawn) {
-                if (Math.abs(lastMove.getFromRow() - lastMove.getToRow()) == 2) {
-                    int row = (lastMove.getFromRow() + lastMove.getToRow()) / 2;
-                    int col = lastMove.getFromCol();
-                    enPassant = "" + (char) ('a' + col) + (8 - row);
+        // Halfmove clock and fullmove number (optional)
+        i = skipSpaces(fen, i);
+        if (i < length) {
+            int start = i;
+            int value = 0;
+            for (; i < length && fen.charAt(i) >= '0' && fen.charAt(i) <= '9'; i++) {
+                value = value * 10 + fen.charAt(i) - '0';
+            }
+            if (i == start) {
+                throw invalidFEN(fen, "bad halfmove clock");
+            }
+            halfmoveClock = value;
+
+            i = skipSpaces(fen, i);
+            if (i < length) {
+                start = i;
+                value = 0;
+                for (; i < length && fen.charAt(i) >= '0' && fen.charAt(i) <= '9'; i++) {
+                    value = value * 10 + fen.charAt(i) - '0';
                 }
+                if (i == start) {
+                    throw invalidFEN(fen, "bad fullmove number");
+                }
+                fullmoveNumber = Math.max(1, value);
             }
         }
-        fen.append(" ").append(enPassant);
+        if (skipSpaces(fen, i) < length) {
+            throw invalidFEN(fen, "unexpected text after the fullmove number");
+        }
+    }
+
+    // Castling rights the piece placement allows: the king and that side's rook are still
+    // on their starting squares
+    private int castlingRightsInPlace() {
+        int rights = 0;
+        long whiteRooks = getBitboard(Piece.ROOK, true);
+        long blackRooks = getBitboard(Piece.ROOK, false);
+        if (getKingSquare(true) == 60) {
+            if ((whiteRooks & (1L << 63)) != 0)
+                rights |= WHITE_KINGSIDE;
+            if ((whiteRooks & (1L << 56)) != 0)
+                rights |= WHITE_QUEENSIDE;
+        }
+        if (getKingSquare(false) == 4) {
+            if ((blackRooks & (1L << 7)) != 0)
+                rights |= BLACK_KINGSIDE;
+            if ((blackRooks & 1L) != 0)
+                rights |= BLACK_QUEENSIDE;
+        }
+        return rights;
+    }
 
-        // Add halfmove clock and fullmove number (simplified)
-        fen.append(" 0 1");
+    private static int skipSpaces(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
 
-        return fen.toString();
+    private static IllegalArgumentException invalidFEN(CharSequence fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN (" + reason + "): " + fen);
     }
 }
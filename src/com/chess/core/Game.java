@@ -4,6 +4,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Game {
+    // Outcome of the current position, as reported by getStatus()
+    public static final int STATUS_ONGOING = 0;
+    public static final int STATUS_CHECKMATE = 1;
+    public static final int STATUS_STALEMATE = 2;
+    public static final int STATUS_DRAW_REPETITION = 3;
+    public static final int STATUS_DRAW_FIFTY_MOVES = 4;
+    public static final int STATUS_DRAW_INSUFFICIENT_MATERIAL = 5;
+
     private Board board;
     private boolean isWhiteTurn;
     private boolean gameOver;
@@ -19,9 +27,16 @@ public class Game {
     private boolean isTimedGame;
     private long lastTimeUpdate;
 
+    // Legal moves, check flag and outcome of the current position. They are computed once
+    // per position (keyed by the board's hash) and shared by every status query.
+    private final MoveList legalMoves = new MoveList();
+    private long statusKey;
+    private boolean statusValid;
+    private boolean inCheck;
+    private int status;
+
     public Game() {
         this.board = new Board();
-        this.board.setGame(this);
         this.isWhiteTurn = true; // White moves first
         this.gameOver = false;
         this.moveHistory = new ArrayList<>();
@@ -86,6 +101,13 @@ public class Game {
         return blackTimeRemaining;
     }
 
+    // Clock time left for one side in milliseconds, or -1 in an untimed game
+    public long getTimeRemaining(boolean isWhite) {
+        if (!isTimedGame)
+            return -1;
+        return isWhite ? whiteTimeRemaining : blackTimeRemaining;
+    }
+
     public boolean isTimedGame() {
         return isTimedGame;
     }
@@ -110,27 +132,13 @@ public class Game {
         if (piece.isWhite() != isWhiteTurn)
             return false;
 
-        // Get valid moves for the selected piece
-        List<Move> validMoves = piece.getValidMoves(board);
-
-        // Check if the move is valid
-        if (!validMoves.contains(move))
+        // Check if the move is legal; the generator already rejects moves that would put
+        // or leave our own king in check
+        int packedMove = move.toPacked();
+        refreshStatus();
+        if (!legalMoves.contains(packedMove))
             return false;
 
-        // Test if the move would put or leave own king in check
-        Piece capturedPiece = board.getPiece(move.getToRow(), move.getToCol());
-        board.setPiece(move.getToRow(), move.getToCol(), piece);
-        board.setPiece(move.getFromRow(), move.getFromCol(), null);
-
-        boolean inCheck = board.isInCheck(isWhiteTurn);
-
-        // Undo the test move
-        board.setPiece(move.getFromRow(), move.getFromCol(), piece);
-        board.setPiece(move.getToRow(), move.getToCol(), capturedPiece);
-
-        if (inCheck)
-            return false; // Can't make moves that put/leave own king in check
-
         // Check for king capture
         Piece targetPiece = board.getPiece(move.getToRow(), move.getToCol());
         if (targetPiece instanceof King) {
@@ -138,183 +146,63 @@ public class Game {
             return false; // Can't capture the king - should be checkmate before this
         }
 
-        // Always start by setting the last move (this is the valid move we're
-        // executing)
+        // Execute the move; the board handles en passant, castling, promotion, castling
+        // rights and the hashed position state
+        board.makeMove(packedMove);
         board.setLastMove(move);
 
-        // Handle special moves
-        char specialMove = move.getSpecialMove();
-        if (specialMove == 'E' || specialMove == 'C') {
-            if (specialMove == 'E') { // En passant
-                capturedPiece = board.getPiece(move.getFromRow(), move.getToCol());
-                if (!(capturedPiece instanceof Pawn && ((Pawn) capturedPiece).canBeEnPassanted())) {
-                    board.setLastMove(null);
-                    return false;
-                }
-
-                // Save positions
-                int fromRow = move.getFromRow();
-                int fromCol = move.getFromCol();
-                int toRow = move.getToRow();
-                int toCol = move.getToCol();
-
-                // Clear captured pawn's square and update its state
-                board.setPiece(fromRow, toCol, null);
-                if (capturedPiece != null) {
-                    capturedPiece.setPosition(-1, -1);
-                }
-
-                // Move the attacking pawn
-                board.setPiece(toRow, toCol, piece);
-                board.setPiece(fromRow, fromCol, null);
-                piece.setPosition(toRow, toCol);
-            } else if (specialMove == 'C') { // Castling
-                // Move the king first
-                board.setPiece(move.getToRow(), move.getToCol(), piece);
-                board.setPiece(move.getFromRow(), move.getFromCol(), null);
-                piece.setPosition(move.getToRow(), move.getToCol());
-
-                // Then move the rook
-                int rookFromCol = move.getToCol() > move.getFromCol() ? 7 : 0;
-                int rookToCol = move.getToCol() > move.getFromCol() ? move.getToCol() - 1 : move.getToCol() + 1;
-                Piece rook = board.getPiece(move.getFromRow(), rookFromCol);
-                board.setPiece(move.getFromRow(), rookFromCol, null);
-                board.setPiece(move.getFromRow(), rookToCol, rook);
-                rook.setPosition(move.getFromRow(), rookToCol);
-
-                if (rook instanceof Rook) {
-                    ((Rook) rook).setHasMoved();
-                }
-                if (piece instanceof King) {
-                    ((King) piece).setHasMoved();
-                }
-            }
-        } else {
-            // Execute the main move for non-special moves
-            board.setPiece(move.getToRow(), move.getToCol(), piece);
-            board.setPiece(move.getFromRow(), move.getFromCol(), null);
-            piece.setPosition(move.getToRow(), move.getToCol());
-        }
-
-        // Handle pawn promotion - only if the move is actually valid
-        if (piece instanceof Pawn && (move.getToRow() == 0 || move.getToRow() == 7) && move.getSpecialMove() != '\0') {
-            Piece promotedPiece;
-            switch (move.getSpecialMove()) {
-                case 'Q':
-                    promotedPiece = new Queen(piece.isWhite(), move.getToRow(), move.getToCol());
-                    break;
-                case 'R':
-                    promotedPiece = new Rook(piece.isWhite(), move.getToRow(), move.getToCol());
-                    break;
-                case 'B':
-                    promotedPiece = new Bishop(piece.isWhite(), move.getToRow(), move.getToCol());
-                    break;
-                case 'N':
-                    promotedPiece = new Knight(piece.isWhite(), move.getToRow(), move.getToCol());
-                    break;
-                default:
-                    promotedPiece = new Queen(piece.isWhite(), move.getToRow(), move.getToCol()); // Default to Queen
-            }
-            board.setPiece(move.getToRow(), move.getToCol(), promotedPiece);
-            board.setLastMove(move);
-        }
-
-        // Update piece status
-        if (piece instanceof King) {
-            ((King) piece).setHasMoved();
-        } else if (piece instanceof Rook) {
-            ((Rook) piece).setHasMoved();
-        } else if (piece instanceof Pawn) {
-            ((Pawn) piece).setHasMoved();
-            // Set en passant vulnerability if pawn moved two squares
-            if (Math.abs(move.getToRow() - move.getFromRow()) == 2) {
-                ((Pawn) piece).setEnPassant(true);
-            }
-        }
-
-        // Clear en passant flags for all pawns of the moving side
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board.getPiece(r, c);
-                if (p instanceof Pawn && p.isWhite() == piece.isWhite() && p != piece) {
-                    ((Pawn) p).setEnPassant(false);
-                }
-            }
-        }
-
         moveHistory.add(move);
 
         // Switch turns before checking for checkmate
         isWhiteTurn = !isWhiteTurn;
 
-        // Check if this move results in checkmate for the opponent
-        if (board.isCheckmate(isWhiteTurn)) {
+        // Evaluate the new position once; checkmate, stalemate and draws all end the game
+        refreshStatus();
+        if (status != STATUS_ONGOING) {
             gameOver = true;
-            // The player who just made the move (opposite of isWhiteTurn) wins
-            return true;
         }
 
-        // Check if the opponent is in check
-        if (board.isInCheck(isWhiteTurn)) {
-            // Opponent is in check but not checkmate
-            return true;
-        }
-
-        // Check for stalemate
-        updateGameStatus();
-
         return true;
     }
 
-    public boolean isCheckmate() {
-        return board.isCheckmate(isWhiteTurn);
-    }
-
-    private void updateGameStatus() {
-        // Check if the current player is in checkmate
-        if (board.isCheckmate(isWhiteTurn)) {
-            gameOver = true;
+    // Generate the legal moves of the current position unless they are already cached
+    private void refreshStatus() {
+        long key = board.getHashKey();
+        if (statusValid && statusKey == key) {
             return;
         }
 
-        // Check for stalemate - no legal moves but not in check
-        boolean hasLegalMoves = false;
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece != null && piece.isWhite() == isWhiteTurn) {
-                    List<Move> moves = piece.getValidMoves(board);
-                    for (Move move : moves) {
-                        // Try the move
-                        Piece capturedPiece = board.getPiece(move.getToRow(), move.getToCol());
-                        board.setPiece(move.getToRow(), move.getToCol(), piece);
-                        board.setPiece(move.getFromRow(), move.getFromCol(), null);
-                        piece.setPosition(move.getToRow(), move.getToCol());
-
-                        // Check if the move puts/leaves us in check
-                        boolean inCheck = board.isInCheck(isWhiteTurn);
-
-                        // Undo the move
-                        piece.setPosition(move.getFromRow(), move.getFromCol());
-                        board.setPiece(move.getFromRow(), move.getFromCol(), piece);
-                        board.setPiece(move.getToRow(), move.getToCol(), capturedPiece);
-
-                        if (!inCheck) {
-                            hasLegalMoves = true;
-                            break;
-                        }
-                    }
-                }
-                if (hasLegalMoves)
-                    break;
-            }
-            if (hasLegalMoves)
-                break;
+        legalMoves.clear();
+        LegalMoveGenerator.generate(board, isWhiteTurn, legalMoves);
+        inCheck = board.isInCheck(isWhiteTurn);
+        if (legalMoves.isEmpty()) {
+            status = inCheck ? STATUS_CHECKMATE : STATUS_STALEMATE;
+        } else if (board.isInsufficientMaterial()) {
+            status = STATUS_DRAW_INSUFFICIENT_MATERIAL;
+        } else if (board.isFiftyMoveDraw()) {
+            status = STATUS_DRAW_FIFTY_MOVES;
+        } else if (board.getRepetitionCount() >= 2) {
+            status = STATUS_DRAW_REPETITION;
+        } else {
+            status = STATUS_ONGOING;
         }
 
-        if (!hasLegalMoves) {
-            gameOver = true;
-        }
+        statusKey = key;
+        statusValid = true;
+    }
+
+    public int getStatus() {
+        refreshStatus();
+        return status;
+    }
+
+    public int getLegalMoveCount() {
+        refreshStatus();
+        return legalMoves.size();
+    }
+
+    public boolean isCheckmate() {
+        return getStatus() == STATUS_CHECKMATE;
     }
 
     public boolean isGameOver() {
@@ -334,11 +222,12 @@ public class Game {
     }
 
     public boolean isInCheck() {
-        return board.isInCheck(isWhiteTurn);
+        refreshStatus();
+        return inCheck;
     }
 
     public boolean isStalemate() {
-        return gameOver && !isInCheck();
+        return getStatus() == STATUS_STALEMATE;
     }
 
     public String getGameStatus() {
@@ -348,6 +237,15 @@ public class Game {
         if (isStalemate()) {
             return "Game drawn by stalemate!";
         }
+        if (status == STATUS_DRAW_REPETITION) {
+            return "Game drawn by threefold repetition!";
+        }
+        if (status == STATUS_DRAW_FIFTY_MOVES) {
+            return "Game drawn by the fifty-move rule!";
+        }
+        if (status == STATUS_DRAW_INSUFFICIENT_MATERIAL) {
+            return "Game drawn by insufficient material!";
+        }
         if (isInCheck()) {
             return (isWhiteTurn ? "White" : "Black") + " is in check!";
         }
@@ -0,0 +1,242 @@
+package com.chess.core;
+
+// Generates strictly legal moves in one pass. Checkers, pinned pieces and the check
+// evasion mask are computed once per position, and each piece's targets are masked
+// by them, so no move has to be played and taken back to test for check.
+public final class LegalMoveGenerator {
+    private static final long ALL_SQUARES = -1L;
+
+    private LegalMoveGenerator() {
+    }
+
+    // Append every legal move of the side to move
+    public static void generate(Board board, MoveList moves) {
+        generate(board, board.isWhiteToMove(), moves);
+    }
+
+    // Append every legal move of one side (en passant only applies to the side to move)
+    public static void generate(Board board, boolean isWhite, MoveList moves) {
+        generate(board, isWhite, false, moves);
+    }
+
+    // Append only the legal captures and promotions of the side to move, for
+    // quiescence search. No castling and no quiet pushes.
+    public static void generateCaptures(Board board, MoveList moves) {
+        generate(board, board.isWhiteToMove(), true, moves);
+    }
+
+    private static void generate(Board board, boolean isWhite, boolean capturesOnly, MoveList moves) {
+        long occupied = board.getOccupied();
+        long own = board.getOccupancy(isWhite);
+        long enemy = board.getOccupancy(!isWhite);
+        int kingSquare = board.getKingSquare(isWhite);
+
+        long checkMask = ALL_SQUARES; // squares that resolve a check (or all when not in check)
+        long pinned = 0L;
+
+        if (kingSquare != -1) {
+            long checkers = board.attackersTo(kingSquare, !isWhite, occupied);
+
+            // King moves, tested with the king lifted off its square so sliders see past it
+            long kingless = occupied & ~(1L << kingSquare);
+            long targets = Attacks.king(kingSquare) & (capturesOnly ? enemy : ~own);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (board.attackersTo(to, !isWhite, kingless) == 0) {
+                    moves.add(Move.encode(kingSquare, to, Move.FLAG_NONE));
+                }
+            }
+
+            // In double check only the king can move
+            if (Long.bitCount(checkers) > 1) {
+                return;
+            }
+            if (checkers != 0) {
+                int checker = Long.numberOfTrailingZeros(checkers);
+                checkMask = checkers | Attacks.between(kingSquare, checker);
+            } else if (!capturesOnly) {
+                generateCastling(board, isWhite, kingSquare, occupied, moves);
+            }
+
+            pinned = findPinned(board, isWhite, kingSquare, occupied, own);
+        }
+
+        long targetMask = (capturesOnly ? enemy : ~own) & checkMask;
+
+        // Knights: a pinned knight can never move
+        long knights = board.getBitboard(Piece.KNIGHT, isWhite) & ~pinned;
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addMoves(moves, from, Attacks.knight(from) & targetMask);
+        }
+
+        // Sliders: a pinned slider stays on the line through its king
+        long diagonal = board.getBitboard(Piece.BISHOP, isWhite) | board.getBitboard(Piece.QUEEN, isWhite);
+        while (diagonal != 0) {
+            int from = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            long targets = Attacks.bishop(from, occupied) & targetMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(kingSquare, from);
+            }
+            addMoves(moves, from, targets);
+        }
+
+        long straight = board.getBitboard(Piece.ROOK, isWhite) | board.getBitboard(Piece.QUEEN, isWhite);
+        while (straight != 0) {
+            int from = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            long targets = Attacks.rook(from, occupied) & targetMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(kingSquare, from);
+            }
+            addMoves(moves, from, targets);
+        }
+
+        generatePawnMoves(board, isWhite, kingSquare, occupied, enemy, checkMask, pinned, capturesOnly, moves);
+    }
+
+    // Append the legal moves of the piece standing on one square
+    public static void generateFrom(Board board, int square, MoveList moves) {
+        Piece piece = board.getPiece(square);
+        if (piece == null) {
+            return;
+        }
+        int start = moves.size();
+        generate(board, piece.isWhite(), moves);
+        int count = start;
+        for (int i = start; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (Move.getFrom(move) == square) {
+                moves.set(count++, move);
+            }
+        }
+        moves.truncate(count);
+    }
+
+    private static long findPinned(Board board, boolean isWhite, int kingSquare, long occupied, long own) {
+        long enemyQueens = board.getBitboard(Piece.QUEEN, !isWhite);
+        long enemy = board.getOccupancy(!isWhite);
+        // Enemy sliders that would attack the king if our pieces were not in the way
+        long snipers = (Attacks.rook(kingSquare, enemy) & (board.getBitboard(Piece.ROOK, !isWhite) | enemyQueens))
+                | (Attacks.bishop(kingSquare, enemy) & (board.getBitboard(Piece.BISHOP, !isWhite) | enemyQueens));
+
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(kingSquare, sniper) & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) {
+                pinned |= blockers;
+            }
+        }
+        return pinned;
+    }
+
+    private static void generatePawnMoves(Board board, boolean isWhite, int kingSquare, long occupied, long enemy,
+            long checkMask, long pinned, boolean capturesOnly, MoveList moves) {
+        int forward = isWhite ? -8 : 8;
+        int startRow = isWhite ? 6 : 1;
+        int promotionRow = isWhite ? 0 : 7;
+        int enPassantSquare = isWhite == board.isWhiteToMove() ? board.getEnPassantSquare() : -1;
+
+        long pawns = board.getBitboard(Piece.PAWN, isWhite);
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+
+            long allowed = checkMask;
+            if ((pinned & (1L << from)) != 0) {
+                allowed &= Attacks.line(kingSquare, from);
+            }
+
+            // Pushes (only promotions when generating captures)
+            int oneStep = from + forward;
+            if ((occupied & (1L << oneStep)) == 0) {
+                if ((allowed & (1L << oneStep)) != 0 && (!capturesOnly || oneStep / 8 == promotionRow)) {
+                    addPawnMove(moves, from, oneStep, promotionRow);
+                }
+                int twoStep = oneStep + forward;
+                if (!capturesOnly && from / 8 == startRow && (occupied & (1L << twoStep)) == 0 && (allowed & (1L << twoStep)) != 0) {
+                    moves.add(Move.encode(from, twoStep, Move.FLAG_NONE));
+                }
+            }
+
+            // Captures
+            long captures = Attacks.pawn(isWhite, from) & enemy & allowed;
+            while (captures != 0) {
+                int to = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                addPawnMove(moves, from, to, promotionRow);
+            }
+
+            if (enPassantSquare != -1 && (Attacks.pawn(isWhite, from) & (1L << enPassantSquare)) != 0
+                    && isLegalEnPassant(board, isWhite, kingSquare, from, enPassantSquare, occupied, checkMask)) {
+                moves.add(Move.encode(from, enPassantSquare, Move.FLAG_EN_PASSANT));
+            }
+        }
+    }
+
+    // En passant removes two pawns from one rank, which pin masks cannot describe, so
+    // the resulting occupancy is checked for slider attacks on the king directly
+    private static boolean isLegalEnPassant(Board board, boolean isWhite, int kingSquare, int from, int to,
+            long occupied, long checkMask) {
+        int capturedSquare = (from / 8) * 8 + to % 8;
+        // When in check, the capture must remove the checking pawn or block the check
+        if ((checkMask & ((1L << capturedSquare) | (1L << to))) == 0) {
+            return false;
+        }
+        if (kingSquare == -1) {
+            return true;
+        }
+        long after = (occupied & ~(1L << from) & ~(1L << capturedSquare)) | (1L << to);
+        long enemyQueens = board.getBitboard(Piece.QUEEN, !isWhite);
+        long rookAttackers = board.getBitboard(Piece.ROOK, !isWhite) | enemyQueens;
+        long bishopAttackers = board.getBitboard(Piece.BISHOP, !isWhite) | enemyQueens;
+        return (Attacks.rook(kingSquare, after) & rookAttackers) == 0
+                && (Attacks.bishop(kingSquare, after) & bishopAttackers) == 0;
+    }
+
+    private static void generateCastling(Board board, boolean isWhite, int kingSquare, long occupied,
+            MoveList moves) {
+        int kingSide = isWhite ? Board.WHITE_KINGSIDE : Board.BLACK_KINGSIDE;
+        int queenSide = isWhite ? Board.WHITE_QUEENSIDE : Board.BLACK_QUEENSIDE;
+        long rooks = board.getBitboard(Piece.ROOK, isWhite);
+
+        // The rights imply king and rooks are on their home squares; the squares between
+        // must be empty and the king must not pass through an attacked square
+        if (board.hasCastlingRight(kingSide) && (rooks & (1L << (kingSquare + 3))) != 0
+                && (Attacks.between(kingSquare, kingSquare + 3) & occupied) == 0
+                && board.attackersTo(kingSquare + 1, !isWhite, occupied) == 0
+                && board.attackersTo(kingSquare + 2, !isWhite, occupied) == 0) {
+            moves.add(Move.encode(kingSquare, kingSquare + 2, Move.FLAG_CASTLING));
+        }
+        if (board.hasCastlingRight(queenSide) && (rooks & (1L << (kingSquare - 4))) != 0
+                && (Attacks.between(kingSquare, kingSquare - 4) & occupied) == 0
+                && board.attackersTo(kingSquare - 1, !isWhite, occupied) == 0
+                && board.attackersTo(kingSquare - 2, !isWhite, occupied) == 0) {
+            moves.add(Move.encode(kingSquare, kingSquare - 2, Move.FLAG_CASTLING));
+        }
+    }
+
+    private static void addMoves(MoveList moves, int from, long targets) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(Move.encode(from, to, Move.FLAG_NONE));
+        }
+    }
+
+    private static void addPawnMove(MoveList moves, int from, int to, int promotionRow) {
+        if (to / 8 == promotionRow) {
+            moves.add(Move.encode(from, to, Move.FLAG_PROMOTE_QUEEN));
+            moves.add(Move.encode(from, to, Move.FLAG_PROMOTE_ROOK));
+            moves.add(Move.encode(from, to, Move.FLAG_PROMOTE_BISHOP));
+            moves.add(Move.encode(from, to, Move.FLAG_PROMOTE_KNIGHT));
+        } else {
+            moves.add(Move.encode(from, to, Move.FLAG_NONE));
+        }
+    }
+}
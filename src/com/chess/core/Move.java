@@ -1,8 +1,16 @@
 package com.chess.core;
 
-import java.util.Objects;
-
 public class Move {
+    // Packed int encoding used by the move generators and the engine:
+    // bits 0-5 from square, bits 6-11 to square, bits 12-15 flag (square = row * 8 + col)
+    public static final int FLAG_NONE = 0;
+    public static final int FLAG_CASTLING = 1;
+    public static final int FLAG_EN_PASSANT = 2;
+    public static final int FLAG_PROMOTE_KNIGHT = 3;
+    public static final int FLAG_PROMOTE_BISHOP = 4;
+    public static final int FLAG_PROMOTE_ROOK = 5;
+    public static final int FLAG_PROMOTE_QUEEN = 6;
+
     private int fromRow;
     private int fromCol;
     private int toRow;
@@ -21,6 +29,94 @@ public class Move {
         this.specialMove = specialMove;
     }
 
+    public static int encode(int fromSquare, int toSquare, int flag) {
+        return fromSquare | (toSquare << 6) | (flag << 12);
+    }
+
+    public static int getFrom(int move) {
+        return move & 0x3F;
+    }
+
+    public static int getTo(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int getFlag(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static boolean isPromotion(int move) {
+        return getFlag(move) >= FLAG_PROMOTE_KNIGHT;
+    }
+
+    // Piece type (Piece.KNIGHT..Piece.QUEEN) a promotion move turns the pawn into
+    public static int getPromotionType(int move) {
+        return getFlag(move) - FLAG_PROMOTE_KNIGHT + Piece.KNIGHT;
+    }
+
+    public static Move fromPacked(int move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        return new Move(from / 8, from % 8, to / 8, to % 8, flagToSpecialMove(getFlag(move)));
+    }
+
+    // Long algebraic (UCI) notation of a packed move, e.g. "e2e4" or "e7e8q"
+    public static String toUci(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        appendSquare(sb, getFrom(move));
+        appendSquare(sb, getTo(move));
+        if (isPromotion(move)) {
+            sb.append("nbrq".charAt(getPromotionType(move) - Piece.KNIGHT));
+        }
+        return sb.toString();
+    }
+
+    private static void appendSquare(StringBuilder sb, int square) {
+        sb.append((char) ('a' + square % 8)).append((char) ('8' - square / 8));
+    }
+
+    public int toPacked() {
+        return encode(fromRow * 8 + fromCol, toRow * 8 + toCol, specialMoveToFlag(specialMove));
+    }
+
+    private static char flagToSpecialMove(int flag) {
+        switch (flag) {
+            case FLAG_CASTLING:
+                return 'C';
+            case FLAG_EN_PASSANT:
+                return 'E';
+            case FLAG_PROMOTE_KNIGHT:
+                return 'N';
+            case FLAG_PROMOTE_BISHOP:
+                return 'B';
+            case FLAG_PROMOTE_ROOK:
+                return 'R';
+            case FLAG_PROMOTE_QUEEN:
+                return 'Q';
+            default:
+                return '\0';
+        }
+    }
+
+    private static int specialMoveToFlag(char specialMove) {
+        switch (specialMove) {
+            case 'C':
+                return FLAG_CASTLING;
+            case 'E':
+                return FLAG_EN_PASSANT;
+            case 'N':
+                return FLAG_PROMOTE_KNIGHT;
+            case 'B':
+                return FLAG_PROMOTE_BISHOP;
+            case 'R':
+                return FLAG_PROMOTE_ROOK;
+            case 'Q':
+                return FLAG_PROMOTE_QUEEN;
+            default:
+                return FLAG_NONE;
+        }
+    }
+
     public char getSpecialMove() {
         return specialMove;
     }
@@ -55,6 +151,6 @@ public class Move {
 
     @Override
     public int hashCode() {
-        return Objects.hash(fromRow, fromCol, toRow, toCol);
+        return ((fromRow * 8 + fromCol) * 64 + toRow * 8 + toCol) * 31 + specialMove;
     }
 }
@@ -0,0 +1,121 @@
+package com.chess.core;
+
+// Move generator correctness and throughput check: counts the leaf nodes of the legal
+// move tree and compares them with published counts for standard reference positions.
+// Run with: java com.chess.core.Perft [maxDepth]
+public final class Perft {
+    private static final int MAX_DEPTH = 16;
+
+    // Reference positions with their known node counts for depth 1, 2, 3, ...
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            // "Kiwipete": castling, pins and en passant in the middlegame
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            // En passant that would expose the king along the rank
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            // Promotions, under-promotions and castling out of check
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+
+    private static final long[][] EXPECTED = {
+            { 20, 400, 8902, 197281, 4865609 },
+            { 48, 2039, 97862, 4085603, 193690690 },
+            { 14, 191, 2812, 43238, 674624, 11030083 },
+            { 6, 264, 9467, 422333, 15833292 },
+            { 44, 1486, 62379, 2103487, 89941194 },
+            { 46, 2079, 89890, 3894594, 164075551 },
+    };
+
+    private final Board board;
+    private final MoveList[] moveLists = new MoveList[MAX_DEPTH];
+
+    public Perft(Board board) {
+        this.board = board;
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    // Number of leaf nodes of the legal move tree at the given depth
+    public long perft(int depth) {
+        return perft(depth, 0);
+    }
+
+    private long perft(int depth, int ply) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        LegalMoveGenerator.generate(board, moves);
+        // Every generated move is legal, so the last ply only needs the count
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += perft(depth - 1, ply + 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    // Perft split by root move, printed one "move: nodes" line each, to locate the move
+    // whose subtree differs from a reference engine
+    public long divide(int depth) {
+        MoveList moves = new MoveList();
+        LegalMoveGenerator.generate(board, moves);
+
+        long total = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            long nodes = depth > 1 ? perft(depth - 1, 0) : 1;
+            board.unmakeMove();
+            System.out.println(Move.toUci(move) + ": " + nodes);
+            total += nodes;
+        }
+        System.out.println("Total: " + total);
+        return total;
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        boolean allPassed = true;
+
+        for (int p = 0; p < POSITIONS.length; p++) {
+            Perft perft = new Perft(Board.fromFEN(POSITIONS[p]));
+            System.out.println(POSITIONS[p]);
+            for (int depth = 1; depth <= Math.min(maxDepth, EXPECTED[p].length); depth++) {
+                long start = System.nanoTime();
+                long nodes = perft.perft(depth);
+                long elapsed = System.nanoTime() - start;
+                totalNodes += nodes;
+                totalNanos += elapsed;
+
+                boolean passed = nodes == EXPECTED[p][depth - 1];
+                allPassed &= passed;
+                System.out.printf("  depth %d: %12d nodes %8.1f ms %10.0f nps %s%n", depth, nodes,
+                        elapsed / 1e6, nodesPerSecond(nodes, elapsed),
+                        passed ? "ok" : "FAILED (expected " + EXPECTED[p][depth - 1] + ")");
+            }
+        }
+
+        System.out.printf("%d nodes in %.1f ms, %.0f nps%n", totalNodes, totalNanos / 1e6,
+                nodesPerSecond(totalNodes, totalNanos));
+        System.out.println(allPassed ? "All positions passed" : "Some positions FAILED");
+        if (!allPassed) {
+            System.exit(1);
+        }
+    }
+
+    private static double nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+}
@@ -1,14 +1,23 @@
 package com.chess.core;
 
 import java.util.List;
-import java.util.ArrayList;
-import javax.swing.*;
 
 public abstract class Piece {
+    // Piece type codes, also used to index Board bitboards (black adds COLOR_OFFSET)
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int COLOR_OFFSET = 6;
+
+    // Material value in centipawns by type, shared by evaluation, SEE and move ordering
+    private static final int[] VALUES = { 100, 320, 330, 500, 900, 20000 };
+
     protected boolean isWhite;
     protected int row;
     protected int col;
-    protected ImageIcon icon;
 
     public Piece(boolean isWhite, int row, int col) {
         this.isWhite = isWhite;
@@ -16,67 +25,17 @@ public abstract class Piece {
         this.col = col;
     }
 
-    public void onMove() {
-        // Default implementation does nothing
-    }
-
     public List<Move> getValidMoves(Board board) {
-        List<Move> moves = calculateValidMoves(board);
-        List<Move> legalMoves = new ArrayList<>();
-
-        // If piece is pinned, only allow moves that stay in line with the king
-        if (board.isPinned(this)) {
-            moves.clear();
-            // Recalculate moves based on pin constraints
-            // This will be overridden by each piece type
-            List<Move> pinnedMoves = calculatePinnedMoves(board);
-            if (pinnedMoves != null) {
-                moves.addAll(pinnedMoves);
-            }
-        }
-
-        // Filter moves based on check
-        if (board.isInCheck(isWhite)) {
-            // Try each move to see if it gets us out of check
-            for (Move move : moves) {
-                // Save current board state
-                Piece capturedPiece = board.getPiece(move.getToRow(), move.getToCol());
-                int oldRow = move.getFromRow();
-                int oldCol = move.getFromCol();
-                int newRow = move.getToRow();
-                int newCol = move.getToCol();
-
-                // Make the move
-                board.setPiece(newRow, newCol, this);
-                board.setPiece(oldRow, oldCol, null);
-                setPosition(newRow, newCol);
-
-                // Check if we're still in check
-                if (!board.isInCheck(isWhite)) {
-                    legalMoves.add(move);
-                }
-
-                // Restore the position
-                board.setPiece(oldRow, oldCol, this);
-                board.setPiece(newRow, newCol, capturedPiece);
-                setPosition(oldRow, oldCol);
-            }
-            return legalMoves;
-        }
-
-        return moves;
+        MoveList moves = new MoveList(32);
+        getValidMoves(board, moves);
+        return moves.toMoves();
     }
 
-    protected abstract List<Move> calculateValidMoves(Board board);
-
-    protected List<Move> calculatePinnedMoves(Board board) {
-        // Default implementation returns no moves for pinned pieces
-        // Subclasses can override to provide specific pin behavior
-        return null;
+    // Append this piece's legal moves to the list in packed form
+    public void getValidMoves(Board board, MoveList moves) {
+        LegalMoveGenerator.generateFrom(board, row * 8 + col, moves);
     }
 
-    protected abstract void loadIcon();
-
     public int getCol() {
         return col;
     }
@@ -85,10 +44,6 @@ public abstract class Piece {
         return row;
     }
 
-    public ImageIcon getIcon() {
-        return icon;
-    }
-
     public boolean isWhite() {
         return isWhite;
     }
@@ -98,5 +53,16 @@ public abstract class Piece {
         this.col = col;
     }
 
+    public static int getValue(int type) {
+        return VALUES[type];
+    }
+
     public abstract String getSymbol();
+
+    public abstract int getType();
+
+    // Index into Board bitboards: 0-5 for white pieces, 6-11 for black pieces
+    public int getIndex() {
+        return isWhite ? getType() : getType() + COLOR_OFFSET;
+    }
 }
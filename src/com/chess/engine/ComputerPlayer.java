@@ -1,5 +1,9 @@
 package com.chess.engine;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import javax.swing.JOptionPane;
 import com.chess.core.*;
 
@@ -14,12 +18,31 @@ public class ComputerPlayer {
     private JavaChessEngine javaEngine;
     private StockfishEngine stockfishEngine;
 
+    // Ponder: suy nghĩ trên thời gian của đối thủ về nước đáp dự đoán của họ
+    private boolean ponderingEnabled = true;
+    private volatile long ponderKey; // khóa hash của thế cờ đang ponder, hoặc 0
+
+    // Giữ trong mọi lần tìm trên engine (getMove và khi bắt đầu ponder), để một lần ponder
+    // hit còn đang chạy của ván cũ không chồng lên lần tìm mới. Luôn lấy trước khóa của this.
+    private final Object searchLock = new Object();
+
+    // Sách khai cuộc được tra trước khi hỏi engine, hoặc null
+    private OpeningBook openingBook;
+    private volatile boolean lastMoveFromBook;
+
     public ComputerPlayer(int engineType, int difficultyLevel) {
+        this(engineType, difficultyLevel, 1);
+    }
+
+    // searchThreads: số luồng Java Bot dùng để tìm (Lazy SMP)
+    public ComputerPlayer(int engineType, int difficultyLevel, int searchThreads) {
         this.engineType = engineType;
         this.difficultyLevel = difficultyLevel;
+        this.openingBook = loadDefaultBook();
 
         if (engineType == TYPE_JAVA_BOT) {
             this.javaEngine = new JavaChessEngine();
+            this.javaEngine.setThreadCount(searchThreads);
         } else if (engineType == TYPE_STOCKFISH) {
             try {
                 this.stockfishEngine = new StockfishEngine();
@@ -30,35 +53,48 @@ public class ComputerPlayer {
                         "Engine Error", JOptionPane.ERROR_MESSAGE);
                 this.engineType = TYPE_JAVA_BOT;
                 this.javaEngine = new JavaChessEngine();
+                this.javaEngine.setThreadCount(searchThreads);
             }
         }
     }
 
-    public Move getMove(Game game) {
+    // Chọn nước đi cho bên đến lượt ở thế cờ cho trước
+    public Move getMove(Board position) {
+        return getMove(position, -1);
+    }
+
+    // Như trên, nhưng chia thời gian tìm theo đồng hồ còn lại của bên đi (số âm nếu ván
+    // không tính giờ)
+    public Move getMove(Board position, long timeRemainingMs) {
+        synchronized (searchLock) {
+            return searchMove(position, timeRemainingMs);
+        }
+    }
+
+    private Move searchMove(Board position, long timeRemainingMs) {
+        Move bookMove = openingBook == null ? null : openingBook.probe(position);
+        lastMoveFromBook = bookMove != null;
+        if (bookMove != null) {
+            stopPondering();
+            return bookMove;
+        }
+
+        Move ponderedMove = finishPondering(position, timeRemainingMs);
+        if (ponderedMove != null) {
+            return ponderedMove;
+        }
+
         if (engineType == TYPE_JAVA_BOT) {
-            // Mapping độ khó cho Java Bot (1-4)
-            int depth;
-            if (difficultyLevel <= 5)
-                depth = 1;
-            else if (difficultyLevel <= 10)
-                depth = 2;
-            else if (difficultyLevel <= 15)
-                depth = 3;
-            else
-                depth = 4;
-
-            return javaEngine.getBestMove(game, depth);
+            return javaEngine.getBestMove(position, getJavaSearchDepth(), timeRemainingMs);
         } else {
             // Stockfish Mode
             if (stockfishEngine == null)
                 return null;
 
-            String fen = game.getBoard().toFEN();
+            String fen = position.toFEN();
             try {
-                // Mapping độ khó Stockfish (dùng trực tiếp level 1-20 làm depth hoặc tính toán)
-                int depth = Math.max(1, difficultyLevel);
-                String moveStr = stockfishEngine.getBestMove(fen, depth);
-                return parseUCIMove(moveStr, game.getBoard());
+                String moveStr = stockfishEngine.getBestMove(fen, getStockfishDepth());
+                return parseUCIMove(moveStr, position);
             } catch (Exception e) {
                 e.printStackTrace();
                 return null;
@@ -66,6 +102,157 @@ public class ComputerPlayer {
         }
     }
 
+    // Mapping độ khó cho Java Bot: độ sâu tối đa, còn thời gian được giới hạn riêng
+    private int getJavaSearchDepth() {
+        if (difficultyLevel <= 5)
+            return 1;
+        else if (difficultyLevel <= 10)
+            return 2;
+        else if (difficultyLevel <= 15)
+            return 3;
+        else
+            return JavaChessEngine.MAX_DEPTH;
+    }
+
+    // Mapping độ khó Stockfish (dùng trực tiếp level 1-20 làm depth hoặc tính toán)
+    private int getStockfishDepth() {
+        return Math.max(1, difficultyLevel);
+    }
+
+    // Sách khai cuộc trong resources/book, nếu đã được cài vào đó
+    private static OpeningBook loadDefaultBook() {
+        Path book = Paths.get(OpeningBook.DEFAULT_BOOK_PATH);
+        if (!Files.exists(book)) {
+            return null;
+        }
+        try {
+            return OpeningBook.open(book);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Thay sách khai cuộc; null thì mọi nước đều do engine tìm
+    public void setOpeningBook(OpeningBook book) {
+        openingBook = book;
+    }
+
+    public void setPondering(boolean enabled) {
+        ponderingEnabled = enabled;
+        if (!enabled) {
+            stopPondering();
+        }
+    }
+
+    public boolean isPondering() {
+        return ponderKey != 0;
+    }
+
+    // Suy nghĩ trên thời gian của đối thủ. position là bàn cờ ngay sau nước đi của máy;
+    // nước đáp dự đoán là nước thứ hai trong biến chính của Java Bot hoặc nước "ponder" của
+    // Stockfish. Không làm gì nếu không có dự đoán dùng được.
+    public void startPondering(Board position) {
+        synchronized (searchLock) {
+            synchronized (this) {
+                beginPondering(position);
+            }
+        }
+    }
+
+    private void beginPondering(Board position) {
+        stopPondering();
+        // Sau nước đi từ sách khai cuộc thì không có biến chính để lấy nước đáp
+        if (!ponderingEnabled || lastMoveFromBook) {
+            return;
+        }
+
+        int reply;
+        if (engineType == TYPE_JAVA_BOT) {
+            int[] pv = javaEngine.getPrincipalVariation();
+            reply = pv.length >= 2 ? pv[1] : 0;
+        } else {
+            String ponderMove = stockfishEngine == null ? null : stockfishEngine.getPonderMove();
+            Move move = parseUCIMove(ponderMove, position);
+            reply = move == null ? 0 : move.toPacked();
+        }
+        MoveList legalMoves = new MoveList();
+        LegalMoveGenerator.generate(position, legalMoves);
+        if (reply == 0 || !legalMoves.contains(reply)) {
+            return;
+        }
+
+        Board expected = position.snapshot();
+        expected.makeMove(reply);
+        long expectedKey = expected.getHashKey();
+        if (engineType == TYPE_JAVA_BOT) {
+            javaEngine.startPondering(expected, getJavaSearchDepth());
+        } else {
+            try {
+                stockfishEngine.startPondering(position.toFEN(), Move.toUci(reply), getStockfishDepth());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        ponderKey = expectedKey;
+    }
+
+    // Không chờ engine dừng hẳn (lần tìm kế tiếp sẽ chờ), nên gọi được từ luồng giao diện
+    public synchronized void stopPondering() {
+        if (ponderKey == 0) {
+            return;
+        }
+        ponderKey = 0;
+        if (javaEngine != null) {
+            javaEngine.stopPondering();
+        }
+        if (stockfishEngine != null) {
+            stockfishEngine.stopPondering();
+        }
+    }
+
+    // Gọi khi lại đến lượt máy. Ponder hit (đối thủ đi đúng nước dự đoán): hoàn tất lần tìm
+    // ponder và trả về nước đi của nó; đoán sai: dừng ponder và trả về null để tìm bình thường.
+    private Move finishPondering(Board position, long timeRemainingMs) {
+        synchronized (this) {
+            if (ponderKey == 0) {
+                return null;
+            }
+            if (ponderKey != position.getHashKey()) {
+                stopPondering();
+                return null;
+            }
+            ponderKey = 0;
+        }
+
+        if (engineType == TYPE_JAVA_BOT) {
+            return javaEngine.ponderHit(timeRemainingMs);
+        }
+        try {
+            return parseUCIMove(stockfishEngine.ponderHit(getStockfishDepth()), position);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Biến chính của lần tìm gần nhất của Java Bot dạng UCI ("e2e4 e7e5 ..."), hoặc chuỗi
+    // rỗng nếu không có (ví dụ ở chế độ Stockfish)
+    public String getPrincipalVariation() {
+        if (javaEngine == null) {
+            return "";
+        }
+        StringBuilder pv = new StringBuilder();
+        for (int move : javaEngine.getPrincipalVariation()) {
+            if (pv.length() > 0) {
+                pv.append(' ');
+            }
+            pv.append(Move.toUci(move));
+        }
+        return pv.toString();
+    }
+
     // Chuyển đổi nước đi dạng String (e2e4) từ Stockfish thành object Move
     private Move parseUCIMove(String moveStr, Board board) {
         if (moveStr == null || moveStr.length() < 4)
@@ -108,9 +295,19 @@ public class ComputerPlayer {
         return new Move(fromRow, fromCol, toRow, toCol);
     }
 
+    public void setSearchThreads(int searchThreads) {
+        if (javaEngine != null) {
+            javaEngine.setThreadCount(searchThreads);
+        }
+    }
+
     public void close() {
+        stopPondering();
         if (stockfishEngine != null) {
             stockfishEngine.close();
         }
+        if (javaEngine != null) {
+            javaEngine.shutdown();
+        }
     }
 }
\ No newline at end of file
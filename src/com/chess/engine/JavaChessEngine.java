@@ -1,356 +1,900 @@
 package com.chess.engine;
 
 import com.chess.core.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class JavaChessEngine {
 
-    // --- PIECE VALUES ---
-    private static final int PAWN_VALUE = 100;
-    private static final int KNIGHT_VALUE = 320;
-    private static final int BISHOP_VALUE = 330;
-    private static final int ROOK_VALUE = 500;
-    private static final int QUEEN_VALUE = 900;
-    private static final int KING_VALUE = 20000;
-
-    // --- PIECE SQUARE TABLES ---
-    private static final int[][] PAWN_TABLE = {
-        {0,  0,  0,  0,  0,  0,  0,  0},
-        {50, 50, 50, 50, 50, 50, 50, 50},
-        {10, 10, 20, 30, 30, 20, 10, 10},
-        {5,  5, 10, 25, 25, 10,  5,  5},
-        {0,  0,  0, 20, 20,  0,  0,  0},
-        {5, -5,-10,  0,  0,-10, -5,  5},
-        {5, 10, 10,-20,-20, 10, 10,  5},
-        {0,  0,  0,  0,  0,  0,  0,  0}
-    };
-
-    private static final int[][] KNIGHT_TABLE = {
-        {-50,-40,-30,-30,-30,-30,-40,-50},
-        {-40,-20,  0,  0,  0,  0,-20,-40},
-        {-30,  0, 10, 15, 15, 10,  0,-30},
-        {-30,  5, 15, 20, 20, 15,  5,-30},
-        {-30,  0, 15, 20, 20, 15,  0,-30},
-        {-30,  5, 10, 15, 15, 10,  5,-30},
-        {-40,-20,  0,  5,  5,  0,-20,-40},
-        {-50,-40,-30,-30,-30,-30,-40,-50}
-    };
-
-    private static final int[][] BISHOP_TABLE = {
-        {-20,-10,-10,-10,-10,-10,-10,-20},
-        {-10,  0,  0,  0,  0,  0,  0,-10},
-        {-10,  0,  5, 10, 10,  5,  0,-10},
-        {-10,  5,  5, 10, 10,  5,  5,-10},
-        {-10,  0, 10, 10, 10, 10,  0,-10},
-        {-10, 10, 10, 10, 10, 10, 10,-10},
-        {-10,  5,  0,  0,  0,  0,  5,-10},
-        {-20,-10,-10,-10,-10,-10,-10,-20}
-    };
-
-    private static final int[][] ROOK_TABLE = {
-        {0,  0,  0,  0,  0,  0,  0,  0},
-        {5, 10, 10, 10, 10, 10, 10,  5},
-        {-5,  0,  0,  0,  0,  0,  0, -5},
-        {-5,  0,  0,  0,  0,  0,  0, -5},
-        {-5,  0,  0,  0,  0,  0,  0, -5},
-        {-5,  0,  0,  0,  0,  0,  0, -5},
-        {-5,  0,  0,  0,  0,  0,  0, -5},
-        {0,  0,  0,  5,  5,  0,  0,  0}
-    };
-
-    private static final int[][] QUEEN_TABLE = {
-        {-20,-10,-10, -5, -5,-10,-10,-20},
-        {-10,  0,  0,  0,  0,  0,  0,-10},
-        {-10,  0,  5,  5,  5,  5,  0,-10},
-        {-5,   0,  5,  5,  5,  5,  0, -5},
-        {-5,   0,  5,  5,  5,  5,  0, -5},
-        {-10,  0,  0,  0,  0,  0,  0,-10},
-        {-10,  0,  0,  0,  0,  0,  0,-10},
-        {-20,-10,-10, -5, -5,-10,-10,-20}
-    };
-
-    private static final int[][] KING_MID_TABLE = {
-        {-30,-40,-40,-50,-50,-40,-40,-30},
-        {-30,-40,-40,-50,-50,-40,-40,-30},
-        {-30,-40,-40,-50,-50,-40,-40,-30},
-        {-30,-40,-40,-50,-50,-40,-40,-30},
-        {-20,-30,-30,-40,-40,-30,-30,-20},
-        {-10,-20,-20,-20,-20,-20,-20,-10},
-        {20, 20,  0,  0,  0,  0, 20, 20},
-        {20, 40, 10,  0,  0, 10, 40, 20}
-    };
-
-    private static final int[][] KING_END_TABLE = {
-        {-50,-40,-30,-20,-20,-30,-40,-50},
-        {-30,-20,-10,  0,  0,-10,-20,-30},
-        {-30,-10, 20, 30, 30, 20,-10,-30},
-        {-30,-10, 30, 40, 40, 30,-10,-30},
-        {-30,-10, 30, 40, 40, 30,-10,-30},
-        {-30,-10, 20, 30, 30, 20,-10,-30},
-        {-30,-30,  0,  0,  0,  0,-30,-30},
-        {-50,-30,-30,-30,-30,-30,-30,-50}
-    };
-
-    private boolean isWhiteEngine;
-
-    // Helper class to store move and its score
-    private class MoveScore {
-        Move move;
-        int score;
-        MoveScore(Move move, int score) {
-            this.move = move;
-            this.score = score;
-        }
-    }
-
-    // Helper class to store exact state for undoing moves
-    // CỰC KỲ QUAN TRỌNG: Phải lưu tham chiếu đến chính object quân cờ ban đầu
-    private class BoardState {
-        Move move;
-        Piece capturedPiece; // Quân cờ bị ăn (nếu có)
-        Piece originalPiece; // Quân cờ thực hiện nước đi (trước khi di chuyển)
-        boolean wasPromotion; // Đánh dấu nếu đây là nước phong cấp giả lập
-    }
-
-    public Move getBestMove(Game game, int depth) {
-        // Xác định AI cầm quân nào
-        this.isWhiteEngine = game.isWhiteTurn(); 
-        
-        Board board = game.getBoard();
-        
-        // Giới hạn độ sâu để tránh lag (Java thuần không mạnh bằng C++ Stockfish)
-        int effectiveDepth = Math.min(depth, 4); 
-
-        MoveScore result = minimax(board, effectiveDepth, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
-        
+    // Các kỹ thuật tìm kiếm chọn lọc, bật/tắt riêng từng cái để so sánh A/B
+    public enum SearchFeature {
+        NULL_MOVE_PRUNING,
+        LATE_MOVE_REDUCTIONS,
+        REVERSE_FUTILITY_PRUNING,
+        FUTILITY_PRUNING,
+        MATE_DISTANCE_PRUNING,
+        CHECK_EXTENSIONS
+    }
+
+    // Độ sâu tìm kiếm tối đa; các tầng còn lại tới MAX_PLY dành cho tìm kiếm tĩnh
+    private static final int MAX_PLY = 128;
+    public static final int MAX_DEPTH = 63;
+
+    // Thời gian mặc định cho một nước khi ván cờ không tính giờ (ms)
+    private static final long DEFAULT_SOFT_LIMIT_MS = 1000;
+    private static final long DEFAULT_HARD_LIMIT_MS = 3000;
+    // Số node giữa hai lần kiểm tra đồng hồ
+    private static final int TIME_CHECK_INTERVAL = 1024;
+    // Giới hạn node cho lần tìm ponder (không có giới hạn thời gian), khoảng một phút tìm
+    private static final long PONDER_NODE_LIMIT = 50_000_000L;
+
+    // Kích thước bảng chuyển vị mặc định (MB)
+    public static final int DEFAULT_HASH_MB = 16;
+
+    private static final int INFINITY = 1_000_000;
+    // Cửa sổ aspiration quanh điểm vòng trước (centipawn); quá rộng thì dùng cửa sổ đầy đủ
+    private static final int ASPIRATION_MIN_DEPTH = 4;
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final int ASPIRATION_MAX_WINDOW = 800;
+    // Điểm chiếu hết: MATE_SCORE - ply, để ưu tiên chiếu hết nhanh hơn
+    private static final int MATE_SCORE = 100000;
+    private static final int MATE_BOUND = MATE_SCORE - MAX_PLY;
+
+    // Danh sách nước đi và điểm sắp xếp dùng lại cho từng tầng (ply) để tránh cấp phát mỗi node
+    private final MoveList[] moveLists = new MoveList[MAX_PLY];
+    private final int[][] moveScores = new int[MAX_PLY][256];
+    private int rootBestMove; // Nước đi tốt nhất tìm được ở gốc (dạng packed)
+
+    // Bảng PV tam giác: pvTable[ply][ply..pvLength[ply]) là biến chính tính từ tầng ply
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    // Kết quả của vòng lặp hoàn tất gần nhất
+    private int[] principalVariation = new int[0];
+    private int lastScore;
+    private int completedDepth;
+    private int previousBestMove; // Nước tốt nhất của vòng lặp trước, được xét đầu tiên ở gốc
+
+    // Sắp xếp nước đi: điểm các nhóm nước (cao hơn được xét trước)
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 24;
+    private static final int KILLER_SCORE = 1 << 23;
+    private static final int COUNTER_MOVE_SCORE = KILLER_SCORE - 2;
+    private static final int HISTORY_LIMIT = 1 << 20; // điểm lịch sử luôn nhỏ hơn các nhóm trên
+
+    private final int[][] killers = new int[MAX_PLY][2]; // hai nước im lặng gây cắt nhánh gần nhất mỗi tầng
+    private final int[][][] history = new int[2][64][64]; // [bên][từ ô][tới ô]
+    private final int[][] counterMoves = new int[64][64]; // [từ ô][tới ô] của nước đối thủ vừa đi
+
+    // Tìm kiếm chọn lọc: ngưỡng độ sâu và khoảng dự phòng (centipawn)
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    private static final int NULL_MOVE_VERIFY_DEPTH = 8; // từ độ sâu này kiểm chứng lại null move
+    private static final int REVERSE_FUTILITY_MAX_DEPTH = 3;
+    private static final int REVERSE_FUTILITY_MARGIN = 120; // nhân với độ sâu còn lại
+    private static final int[] FUTILITY_MARGINS = { 0, 200, 350 }; // theo độ sâu còn lại 1..2
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3; // số nước được tìm đủ sâu trước khi giảm
+    // Mức giảm theo [độ sâu][số nước đã xét], tăng theo logarit của cả hai
+    private static final int[][] LMR_REDUCTIONS = new int[MAX_PLY][64];
+
+    static {
+        for (int depth = 1; depth < MAX_PLY; depth++) {
+            for (int searched = 1; searched < 64; searched++) {
+                LMR_REDUCTIONS[depth][searched] = (int) (0.75 + Math.log(depth) * Math.log(searched) / 2.25);
+            }
+        }
+    }
+
+    private final EnumSet<SearchFeature> features = EnumSet.allOf(SearchFeature.class);
+
+    // Quản lý thời gian: dừng giữa chừng khi vượt hạn cứng
+    // Đặt trước khi tìm; volatile để ponderHit (ở luồng khác) bật giới hạn thời gian cho một
+    // lần tìm ponder đang chạy
+    private volatile boolean timeLimited;
+    private volatile long softDeadline;
+    private volatile long hardDeadline;
+    private volatile long nodeLimit; // 0 = không giới hạn
+    private int nullMoveMinPly; // không dùng null move ở các tầng nhỏ hơn (khi đang kiểm chứng)
+    private boolean canStop; // đã xong vòng lặp đầu tiên, được phép dừng giữa chừng
+    private boolean stopped;
+    private int nodesUntilTimeCheck;
+
+    // Bảng chuyển vị: nhớ kết quả các thế cờ đã tìm để cắt nhánh và sắp xếp nước đi
+    private final TranspositionTable tt;
+
+    // Lazy SMP: các luồng phụ tìm trên bản sao riêng của bàn cờ và chỉ chia sẻ bảng chuyển vị
+    // helperLock giữ helpers và helperPool nhất quán giữa setThreadCount/shutdown và lúc
+    // giao việc cho luồng phụ trong search()
+    private final Object helperLock = new Object();
+    private volatile JavaChessEngine[] helpers = new JavaChessEngine[0];
+    private ExecutorService helperPool;
+    private volatile boolean abortRequested; // yêu cầu dừng: luồng chính gửi luồng phụ, hoặc khi bỏ ponder
+    private long nodes;
+
+    // Ponder: lần tìm trên thời gian của đối thủ, chạy trên luồng riêng
+    private ExecutorService ponderThread;
+    private volatile Future<Move> ponderSearch;
+    private volatile long ponderStart;
+    // stopPondering() không chờ: lần ponder bị bỏ tự thoát theo abortRequested, và lần tìm kế
+    // tiếp chờ nó (stoppedPonder) thay cho luồng giao diện. Mỗi lần bỏ tăng ponderGeneration
+    // để lần ponder đang xếp hàng sau nó không chạy nữa.
+    private Future<Move> stoppedPonder;
+    private int ponderGeneration;
+
+    public JavaChessEngine() {
+        this(DEFAULT_HASH_MB);
+    }
+
+    public JavaChessEngine(int hashMb) {
+        this(new TranspositionTable(hashMb));
+    }
+
+    // Dùng chung một bảng chuyển vị (có thể chia sẻ giữa nhiều engine/luồng)
+    public JavaChessEngine(TranspositionTable tt) {
+        this.tt = tt;
+        for (int i = 0; i < MAX_PLY; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    // Tìm đúng tới độ sâu cho trước, không giới hạn thời gian.
+    // Tìm trên bản sao riêng (Board.snapshot()) nên không bao giờ sửa bàn cờ được truyền vào
+    public Move getBestMove(Board board, int depth) {
+        awaitStoppedPonder();
+        timeLimited = false;
+        nodeLimit = 0;
+        return search(board, depth);
+    }
+
+    // Tìm sâu dần (iterative deepening) trong ngân sách thời gian lấy từ đồng hồ của ván cờ.
+    // timeRemainingMs < 0 nghĩa là ván không tính giờ, khi đó dùng giới hạn mặc định.
+    public Move getBestMove(Board board, int maxDepth, long timeRemainingMs) {
+        awaitStoppedPonder();
+        setTimeLimits(System.nanoTime(), timeRemainingMs);
+        nodeLimit = 0;
+        return search(board, maxDepth);
+    }
+
+    // Hạn mềm/cứng tính từ thời điểm start
+    private void setTimeLimits(long start, long timeRemainingMs) {
+        long softLimitMs;
+        long hardLimitMs;
+        if (timeRemainingMs < 0) {
+            softLimitMs = DEFAULT_SOFT_LIMIT_MS;
+            hardLimitMs = DEFAULT_HARD_LIMIT_MS;
+        } else {
+            // Giả định còn khoảng 30 nước; không bao giờ dùng quá 1/8 thời gian còn lại
+            softLimitMs = Math.max(20, timeRemainingMs / 30);
+            hardLimitMs = Math.max(softLimitMs, Math.min(timeRemainingMs / 8, softLimitMs * 3));
+        }
+        softDeadline = start + softLimitMs * 1_000_000L;
+        hardDeadline = start + hardLimitMs * 1_000_000L;
+        timeLimited = true;
+    }
+
+    // Ponder: tìm không giới hạn thời gian trên một luồng riêng ở thế cờ dự đoán (sau nước
+    // đáp mà đối thủ được chờ đợi sẽ đi), trong lúc đối thủ còn đang suy nghĩ. Không có đồng
+    // hồ nên dừng sau PONDER_NODE_LIMIT node, để lần ponder bị bỏ quên không chạy mãi
+    public void startPondering(Board position, int maxDepth) {
+        stopPondering();
+        if (ponderThread == null) {
+            ponderThread = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        ponderStart = System.nanoTime();
+        timeLimited = false;
+        nodeLimit = PONDER_NODE_LIMIT;
+        int generation = ponderGeneration;
+        ponderSearch = ponderThread.submit(() -> ponder(position, maxDepth, generation));
+    }
+
+    // Chạy trên luồng ponder, sau khi lần ponder bị bỏ trước đó (nếu có) đã thoát
+    private Move ponder(Board position, int maxDepth, int generation) {
+        synchronized (this) {
+            // Đã bị bỏ trước khi kịp bắt đầu
+            if (generation != ponderGeneration) {
+                return null;
+            }
+            abortRequested = false;
+        }
+        return search(position, maxDepth);
+    }
+
+    public boolean isPondering() {
+        return ponderSearch != null;
+    }
+
+    // Đối thủ đi đúng nước dự đoán: lần tìm ponder chuyển sang giới hạn thời gian của nước
+    // này, tính từ lúc bắt đầu ponder. Nếu đã ponder đủ lâu thì trả về ngay kết quả sâu hơn.
+    public Move ponderHit(long timeRemainingMs) {
+        Future<Move> search = takePonderSearch();
+        if (search == null) {
+            return null;
+        }
+        setTimeLimits(ponderStart, timeRemainingMs);
+        // Đã ponder quá hạn mềm: dừng ngay (vòng lặp đầu tiên vẫn luôn được hoàn tất)
+        long now = System.nanoTime();
+        if (now - softDeadline >= 0) {
+            hardDeadline = now;
+        }
+        return awaitPonder(search);
+    }
+
+    // Đối thủ đi nước khác (hoặc ván cờ kết thúc): bỏ lần tìm ponder. Chỉ báo dừng rồi trả về
+    // ngay, nên gọi được từ luồng giao diện
+    public synchronized void stopPondering() {
+        if (ponderSearch == null) {
+            return;
+        }
+        stoppedPonder = ponderSearch;
+        ponderSearch = null;
+        ponderGeneration++;
+        abortRequested = true;
+    }
+
+    // Chờ lần ponder đã bỏ thoát hẳn trước khi tìm, vì nó dùng chung trạng thái tìm kiếm
+    private void awaitStoppedPonder() {
+        Future<Move> search;
+        synchronized (this) {
+            search = stoppedPonder;
+            stoppedPonder = null;
+        }
+        if (search == null) {
+            return;
+        }
+        awaitPonder(search);
+        abortRequested = false;
+    }
+
+    private synchronized Future<Move> takePonderSearch() {
+        Future<Move> search = ponderSearch;
+        ponderSearch = null;
+        return search;
+    }
+
+    private Move awaitPonder(Future<Move> search) {
+        try {
+            return search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    public void setFeatureEnabled(SearchFeature feature, boolean enabled) {
+        if (enabled) {
+            features.add(feature);
+        } else {
+            features.remove(feature);
+        }
+    }
+
+    public boolean isFeatureEnabled(SearchFeature feature) {
+        return features.contains(feature);
+    }
+
+    // Số luồng tìm kiếm (1 = chỉ luồng gọi). Các luồng phụ dùng chung bảng chuyển vị.
+    public void setThreadCount(int threads) {
+        threads = Math.max(1, threads);
+        synchronized (helperLock) {
+            if (threads == getThreadCount()) {
+                return;
+            }
+            stopHelpers();
+            if (threads > 1) {
+                JavaChessEngine[] engines = new JavaChessEngine[threads - 1];
+                for (int i = 0; i < engines.length; i++) {
+                    engines[i] = new JavaChessEngine(tt);
+                }
+                helperPool = Executors.newFixedThreadPool(engines.length, task -> {
+                    Thread thread = new Thread(task, "search-helper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                helpers = engines;
+            }
+        }
+    }
+
+    public int getThreadCount() {
+        return helpers.length + 1;
+    }
+
+    // Dừng ponder và các luồng phụ; engine quay về tìm đơn luồng. Không chờ các luồng
+    // thoát: lần ponder đang chạy tự dừng theo abortRequested
+    public void shutdown() {
+        stopPondering();
+        if (ponderThread != null) {
+            ponderThread.shutdown();
+            ponderThread = null;
+        }
+        stopHelpers();
+    }
+
+    // shutdown() chứ không shutdownNow(): việc đã giao vẫn chạy (và dừng theo abortRequested)
+    // để search() đang chờ chúng không bị treo
+    private void stopHelpers() {
+        synchronized (helperLock) {
+            if (helperPool != null) {
+                helperPool.shutdown();
+                helperPool = null;
+            }
+            helpers = new JavaChessEngine[0];
+        }
+    }
+
+    // Số node đã duyệt trong lần tìm gần nhất, tính cả các luồng phụ
+    public long getNodeCount() {
+        long total = nodes;
+        for (JavaChessEngine helper : helpers) {
+            total += helper.nodes;
+        }
+        return total;
+    }
+
+    // Biến chính (các nước dạng packed, bắt đầu bằng nước đi được chọn) của vòng lặp hoàn
+    // tất gần nhất, để hiển thị phân tích
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    // Điểm (centipawn, theo bên đi ở gốc) và độ sâu của vòng lặp hoàn tất gần nhất
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    public void clearHash() {
+        tt.clear();
+    }
+
+    // Giới hạn thời gian (timeLimited và các hạn) phải được đặt trước khi gọi
+    private Move search(Board position, int maxDepth) {
+        tt.newSearch();
+        // Luồng chính cũng tìm trên bản sao: bàn cờ của người gọi không bị đi/lùi nước
+        Board board = position.snapshot();
+
+        // Khởi động luồng phụ, mỗi luồng một bản sao; một nửa bắt đầu lệch một tầng để
+        // các luồng không đi cùng một nhịp
+        // Giữ helperLock khi giao việc: shutdown()/setThreadCount() ở luồng khác không thể
+        // thay mảng helpers hay đóng helperPool giữa chừng
+        JavaChessEngine[] searchHelpers;
+        Future<?>[] running;
+        synchronized (helperLock) {
+            searchHelpers = helpers;
+            running = new Future<?>[searchHelpers.length];
+            for (int i = 0; i < searchHelpers.length; i++) {
+                JavaChessEngine helper = searchHelpers[i];
+                Board copy = board.snapshot();
+                int firstDepth = 1 + (i & 1);
+                helper.abortRequested = false;
+                helper.features.clear();
+                helper.features.addAll(features);
+                running[i] = helperPool.submit(() -> helper.iterate(copy, maxDepth, firstDepth));
+            }
+        }
+
+        int bestMove = iterate(board, maxDepth, 1);
+
+        // Luồng chính quyết định nước đi; dừng các luồng phụ và chờ chúng thoát
+        for (JavaChessEngine helper : searchHelpers) {
+            helper.abortRequested = true;
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
         // Fallback: Nếu không tìm thấy nước đi (hiếm), random một nước hợp lệ
-        if (result.move == null) {
-             List<Move> allMoves = getAllLegalMoves(board, isWhiteEngine);
+        if (bestMove == 0) {
+             MoveList allMoves = moveLists[0];
+             allMoves.clear();
+             getAllLegalMoves(board, board.isWhiteToMove(), allMoves);
              if (!allMoves.isEmpty()) {
-                 return allMoves.get(new Random().nextInt(allMoves.size()));
+                 return Move.fromPacked(allMoves.get(new Random().nextInt(allMoves.size())));
              }
              return null;
         }
-        
-        return result.move;
+
+        return Move.fromPacked(bestMove);
     }
 
-    private MoveScore minimax(Board board, int depth, int alpha, int beta, boolean maximizing) {
-        if (depth == 0) {
-            return new MoveScore(null, evaluateBoard(board));
+    // Tìm sâu dần từ firstDepth. Sau hạn mềm không bắt đầu vòng mới; tới hạn cứng (hoặc khi
+    // bị yêu cầu dừng) thì bỏ dở vòng đang chạy và trả về nước tốt nhất của vòng cuối cùng
+    // đã hoàn tất
+    private int iterate(Board board, int maxDepth, int firstDepth) {
+        this.stopped = false;
+        this.nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+        this.nodes = 0;
+        this.nullMoveMinPly = 0;
+
+        int bestMove = 0;
+        int score = 0;
+        previousBestMove = 0;
+        principalVariation = new int[0];
+        completedDepth = 0;
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = 0;
+            plyKillers[1] = 0;
         }
+        ageHistory();
+        for (int depth = firstDepth; depth <= Math.min(maxDepth, MAX_DEPTH); depth++) {
+            // Vòng đầu tiên luôn được chạy hết để luôn có nước đi
+            canStop = depth > firstDepth;
+            score = aspirationSearch(board, depth, score);
+            if (stopped) {
+                break;
+            }
+            bestMove = rootBestMove;
+            previousBestMove = rootBestMove;
+            lastScore = score;
+            completedDepth = depth;
+            principalVariation = Arrays.copyOf(pvTable[0], pvLength[0]);
+            if (timeLimited && System.nanoTime() - softDeadline >= 0) {
+                break;
+            }
+            if (nodeLimit > 0 && nodes >= nodeLimit) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    // Tìm với cửa sổ hẹp quanh điểm của vòng trước; nếu điểm rơi ra ngoài thì nới rộng cửa
+    // sổ về phía bị vượt và tìm lại. Các vòng nông dùng cửa sổ đầy đủ.
+    private int aspirationSearch(Board board, int depth, int previousScore) {
+        if (depth < ASPIRATION_MIN_DEPTH || Math.abs(previousScore) >= MATE_BOUND) {
+            return negamax(board, depth, 0, -INFINITY, INFINITY);
+        }
+        int delta = ASPIRATION_WINDOW;
+        int alpha = previousScore - delta;
+        int beta = previousScore + delta;
+        while (true) {
+            int score = negamax(board, depth, 0, alpha, beta);
+            if (stopped) {
+                return 0;
+            }
+            if (score <= alpha) {
+                alpha = Math.max(-INFINITY, score - delta);
+            } else if (score >= beta) {
+                beta = Math.min(INFINITY, score + delta);
+            } else {
+                return score;
+            }
+            delta *= 2;
+            if (delta > ASPIRATION_MAX_WINDOW) {
+                alpha = -INFINITY;
+                beta = INFINITY;
+            }
+        }
+    }
+
+    // Kiểm tra đồng hồ (và yêu cầu dừng từ luồng chính) sau mỗi TIME_CHECK_INTERVAL node
+    private boolean isTimeUp() {
+        if (stopped) {
+            return true;
+        }
+        if (--nodesUntilTimeCheck > 0) {
+            return false;
+        }
+        nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+        stopped = abortRequested || (canStop && timeLimited && System.nanoTime() - hardDeadline >= 0)
+                || (canStop && nodeLimit > 0 && nodes >= nodeLimit);
+        return stopped;
+    }
 
-        boolean currentTurnIsWhite = maximizing ? isWhiteEngine : !isWhiteEngine;
-        List<Move> moves = getAllLegalMoves(board, currentTurnIsWhite);
+    // Negamax PVS: điểm luôn tính theo bên đang đi. Nước đầu tiên được tìm với cửa sổ đầy
+    // đủ, các nước sau với cửa sổ rỗng (zero window) và chỉ tìm lại khi chúng vượt alpha.
+    private int negamax(Board board, int depth, int ply, int alpha, int beta) {
+        // Hết giờ: kết quả của vòng này sẽ bị bỏ, chỉ cần thoát ra thật nhanh
+        if (isTimeUp()) {
+            return 0;
+        }
+        nodes++;
+        pvLength[ply] = ply;
+
+        // Hòa do lặp lại thế cờ, luật 50 nước hoặc không đủ quân chiếu hết
+        // (không xét ở gốc, nơi vẫn phải chọn một nước đi)
+        if (ply > 0 && (board.isRepetition() || board.isFiftyMoveDraw() || board.isInsufficientMaterial())) {
+            return 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluateBoard(board);
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        boolean isWhite = board.isWhiteToMove();
+        boolean inCheck = board.isInCheck(isWhite);
+
+        // Gia hạn khi bị chiếu: thế bị chiếu ở đường chân trời được tìm thêm một tầng
+        if (inCheck && ply < MAX_DEPTH && isFeatureEnabled(SearchFeature.CHECK_EXTENSIONS)) {
+            depth++;
+        }
+
+        if (depth <= 0) {
+            return quiescence(board, ply, alpha, beta);
+        }
+
+        // Cắt theo khoảng cách chiếu hết: từ nút này không thể chiếu hết (hay bị chiếu hết)
+        // nhanh hơn số tầng còn lại, nên thu hẹp cửa sổ về khoảng điểm còn đạt được
+        if (ply > 0 && isFeatureEnabled(SearchFeature.MATE_DISTANCE_PRUNING)) {
+            alpha = Math.max(alpha, -(MATE_SCORE - ply));
+            beta = Math.min(beta, MATE_SCORE - ply - 1);
+            if (alpha >= beta) {
+                return alpha;
+            }
+        }
+
+        // Tra bảng chuyển vị: ở nút ngoài PV thì cắt nhánh nếu kết quả đã lưu đủ sâu; luôn lấy
+        // nước tốt nhất đã lưu để xét trước
+        long key = board.getHashKey();
+        int ttMove = 0;
+        long entry = tt.probe(key);
+        if (entry != 0) {
+            ttMove = TranspositionTable.getMove(entry);
+            if (!pvNode && TranspositionTable.getDepth(entry) >= depth) {
+                int score = scoreFromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER ? score >= beta : score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        int originalAlpha = alpha;
+
+        // Các phép cắt tỉa dưới đây chỉ dùng ở nút ngoài PV, không khi bị chiếu hoặc khi
+        // cửa sổ đã là điểm chiếu hết
+        int staticEval = inCheck ? -INFINITY : evaluateBoard(board);
+        boolean canPrune = !pvNode && !inCheck && Math.abs(beta) < MATE_BOUND;
+
+        // Reverse futility (static null move): ở độ sâu nhỏ, bên đang đi đã hơn beta một
+        // khoảng an toàn thì coi như nút này cắt nhánh
+        if (canPrune && depth <= REVERSE_FUTILITY_MAX_DEPTH
+                && isFeatureEnabled(SearchFeature.REVERSE_FUTILITY_PRUNING)
+                && staticEval - REVERSE_FUTILITY_MARGIN * depth >= beta) {
+            return staticEval - REVERSE_FUTILITY_MARGIN * depth;
+        }
+
+        // Null move: nhường lượt cho đối thủ mà vẫn vượt beta thì nước đi thật gần như chắc
+        // chắn cũng vậy. Chống zugzwang: không dùng khi chỉ còn Vua và Tốt, và không nhường
+        // lượt hai lần liền nhau. Ở độ sâu lớn, cắt nhánh chỉ khi tìm lại (cửa sổ rỗng, cùng
+        // độ sâu đã giảm, không null move ở các tầng gần) cũng vượt beta
+        if (canPrune && depth >= NULL_MOVE_MIN_DEPTH && staticEval >= beta && ply >= nullMoveMinPly
+                && isFeatureEnabled(SearchFeature.NULL_MOVE_PRUNING)
+                && board.getLastMadeMove() != 0 && hasNonPawnMaterial(board, isWhite)) {
+            int reduction = depth >= 6 ? 3 : 2;
+            board.makeNullMove();
+            int score = -negamax(board, depth - 1 - reduction, ply + 1, -beta, -beta + 1);
+            board.unmakeNullMove();
+            if (stopped) return 0;
+            if (score >= beta) {
+                if (depth < NULL_MOVE_VERIFY_DEPTH) {
+                    return beta;
+                }
+                int savedMinPly = nullMoveMinPly;
+                nullMoveMinPly = ply + depth - 1 - reduction;
+                int verified = negamax(board, depth - 1 - reduction, ply, beta - 1, beta);
+                nullMoveMinPly = savedMinPly;
+                if (stopped) return 0;
+                if (verified >= beta) {
+                    return beta;
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        getAllLegalMoves(board, isWhite, moves);
 
         if (moves.isEmpty()) {
-            if (board.isInCheck(currentTurnIsWhite)) {
-                // Checkmate: Điểm cực thấp nếu là lượt mình, cực cao nếu lượt đối thủ
-                return new MoveScore(null, maximizing ? -100000 - depth : 100000 + depth);
+            // Bị chiếu hết: điểm càng thấp khi bị chiếu hết càng sớm; hết nước mà không bị
+            // chiếu là hòa (stalemate)
+            return inCheck ? -(MATE_SCORE - ply) : 0;
+        }
+
+        // Futility: gần lá mà điểm tĩnh cộng một khoảng dự phòng vẫn không tới alpha thì
+        // các nước im lặng không chiếu không đáng xét
+        boolean futile = canPrune && depth < FUTILITY_MARGINS.length
+                && isFeatureEnabled(SearchFeature.FUTILITY_PRUNING)
+                && staticEval + FUTILITY_MARGINS[depth] <= alpha;
+        boolean reduceLateMoves = depth >= LMR_MIN_DEPTH && !inCheck
+                && isFeatureEnabled(SearchFeature.LATE_MOVE_REDUCTIONS);
+
+        // Ở gốc, xét trước nước tốt nhất của vòng lặp trước
+        int[] scores = moveScores[ply];
+        scoreMoves(board, moves, scores, isWhite, ply,
+                ply == 0 && previousBestMove != 0 ? previousBestMove : ttMove);
+        int bestMove = 0;
+        int bestScore = -INFINITY;
+        int searched = 0;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, scores, i);
+            boolean quiet = !isCaptureOrPromotion(board, move);
+            // Thực hiện nước đi giả lập
+            board.makeMove(move);
+            boolean givesCheck = board.isInCheck(!isWhite);
+
+            if (futile && searched > 0 && quiet && !givesCheck) {
+                board.unmakeMove();
+                continue;
             }
-            return new MoveScore(null, 0); // Stalemate (Hòa cờ)
-        }
-
-        orderMoves(board, moves);
-        Move bestMove = moves.get(0);
-
-        if (maximizing) {
-            int maxScore = Integer.MIN_VALUE;
-            for (Move move : moves) {
-                // Thực hiện nước đi giả lập
-                BoardState state = makeInternalMove(board, move);
-                
-                int score = minimax(board, depth - 1, alpha, beta, false).score;
-                
-                // Hoàn tác nước đi giả lập (Quan trọng!)
-                undoInternalMove(board, state);
-
-                if (score > maxScore) {
-                    maxScore = score;
-                    bestMove = move;
+
+            int score;
+            if (searched == 0) {
+                score = -negamax(board, depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                // Late move reductions: nước im lặng xếp cuối ít khi tốt nhất nên được tìm
+                // nông hơn (ở nút PV giảm ít hơn một tầng)
+                int reduction = 0;
+                if (reduceLateMoves && searched >= LMR_MIN_MOVES && quiet && !givesCheck) {
+                    reduction = LMR_REDUCTIONS[depth][Math.min(searched, 63)] - (pvNode ? 1 : 0);
+                    reduction = Math.max(0, Math.min(depth - 2, reduction));
+                }
+                score = -negamax(board, depth - 1 - reduction, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && reduction > 0) {
+                    score = -negamax(board, depth - 1, ply + 1, -alpha - 1, -alpha);
+                }
+                // Vượt alpha trong cửa sổ rỗng ở nút PV: tìm lại với cửa sổ đầy đủ
+                if (score > alpha && score < beta) {
+                    score = -negamax(board, depth - 1, ply + 1, -beta, -alpha);
                 }
-                alpha = Math.max(alpha, score);
-                if (beta <= alpha) break;
             }
-            return new MoveScore(bestMove, maxScore);
-        } else {
-            int minScore = Integer.MAX_VALUE;
-            for (Move move : moves) {
-                BoardState state = makeInternalMove(board, move);
-                
-                int score = minimax(board, depth - 1, alpha, beta, true).score;
-                
-                undoInternalMove(board, state);
-
-                if (score < minScore) {
-                    minScore = score;
-                    bestMove = move;
+
+            // Hoàn tác nước đi giả lập (Quan trọng!)
+            board.unmakeMove();
+            if (stopped) return 0;
+            searched++;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if (alpha >= beta) {
+                        recordCutoff(board, move, isWhite, depth, ply);
+                        break;
+                    }
                 }
-                beta = Math.min(beta, score);
-                if (beta <= alpha) break;
             }
-            return new MoveScore(bestMove, minScore);
         }
+
+        if (ply == 0) rootBestMove = bestMove;
+        storeResult(key, bestMove, depth, ply, bestScore, originalAlpha, beta);
+        return bestScore;
     }
 
-    // --- LOGIC DI CHUYỂN AN TOÀN ---
+    // Bảng PV tam giác: dòng ply là nước vừa chọn ở tầng ply nối với PV của tầng ply + 1
+    private void updatePrincipalVariation(int ply, int move) {
+        int[] line = pvTable[ply];
+        line[ply] = move;
+        int childLength = pvLength[ply + 1];
+        System.arraycopy(pvTable[ply + 1], ply + 1, line, ply + 1, childLength - (ply + 1));
+        pvLength[ply] = Math.max(ply + 1, childLength);
+    }
+
+    private static boolean hasNonPawnMaterial(Board board, boolean isWhite) {
+        // Còn quân nào ngoài vua và tốt không
+        return board.getPieceCount(isWhite) - board.getPieceCount(Piece.PAWN, isWhite) > 1;
+    }
+
+    // Tìm kiếm tĩnh (quiescence): ở lá chỉ xét tiếp nước ăn quân và phong cấp cho tới khi
+    // thế cờ yên, để không đánh giá giữa chừng một chuỗi đổi quân. Bên đang đi có thể
+    // "đứng yên" (stand-pat) với điểm đánh giá tĩnh; nước ăn quân lỗ theo SEE bị bỏ qua.
+    // Khi đang bị chiếu thì phải xét mọi nước thoát chiếu.
+    private int quiescence(Board board, int ply, int alpha, int beta) {
+        if (isTimeUp()) {
+            return 0;
+        }
+        nodes++;
+        pvLength[ply] = ply;
+
+        if (ply >= MAX_PLY - 1) {
+            return evaluateBoard(board);
+        }
 
-    private BoardState makeInternalMove(Board board, Move move) {
-        BoardState state = new BoardState();
-        state.move = move;
-        state.capturedPiece = board.getPiece(move.getToRow(), move.getToCol());
-        state.originalPiece = board.getPiece(move.getFromRow(), move.getFromCol());
-        state.wasPromotion = false;
+        boolean isWhite = board.isWhiteToMove();
+        boolean inCheck = board.isInCheck(isWhite);
+        MoveList moves = moveLists[ply];
+        moves.clear();
 
-        // Xử lý Phong Cấp (Pawn Promotion)
-        // Nếu Tốt đi đến hàng cuối, ta giả lập nó biến thành Hậu để tính điểm
-        if (state.originalPiece instanceof Pawn && (move.getToRow() == 0 || move.getToRow() == 7)) {
-            state.wasPromotion = true;
-            // Tạo quân Hậu mới thay thế
-            Piece promoQueen = new Queen(state.originalPiece.isWhite(), move.getToRow(), move.getToCol());
-            board.setPiece(move.getToRow(), move.getToCol(), promoQueen);
-            // Xóa quân Tốt ở vị trí cũ
-            board.setPiece(move.getFromRow(), move.getFromCol(), null);
+        int bestScore;
+        if (inCheck) {
+            getAllLegalMoves(board, isWhite, moves);
+            if (moves.isEmpty()) {
+                return -(MATE_SCORE - ply);
+            }
+            bestScore = -INFINITY;
         } else {
-            // Di chuyển thông thường
-            board.setPiece(move.getToRow(), move.getToCol(), state.originalPiece);
-            board.setPiece(move.getFromRow(), move.getFromCol(), null);
-            
-            // Cập nhật tọa độ nội bộ của quân cờ
-            if (state.originalPiece != null) {
-                state.originalPiece.setPosition(move.getToRow(), move.getToCol());
+            int standPat = evaluateBoard(board);
+            if (standPat >= beta) {
+                return standPat;
             }
+            alpha = Math.max(alpha, standPat);
+            bestScore = standPat;
+            LegalMoveGenerator.generateCaptures(board, moves);
         }
 
-        return state;
-    }
+        int[] scores = moveScores[ply];
+        scoreMoves(board, moves, scores, isWhite, ply, 0);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, scores, i);
+            // Bỏ phong cấp non (chỉ xét phong Hậu) và nước ăn quân thua vật chất
+            if (!inCheck && ((Move.isPromotion(move) && Move.getFlag(move) != Move.FLAG_PROMOTE_QUEEN)
+                    || board.see(move) < 0)) {
+                continue;
+            }
+
+            board.makeMove(move);
+            int score = -quiescence(board, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (stopped) return 0;
 
-    private void undoInternalMove(Board board, BoardState state) {
-        Move move = state.move;
-        
-        // 1. Khôi phục quân cờ di chuyển về vị trí cũ (BẮT BUỘC dùng object gốc)
-        board.setPiece(move.getFromRow(), move.getFromCol(), state.originalPiece);
-        if (state.originalPiece != null) {
-            state.originalPiece.setPosition(move.getFromRow(), move.getFromCol());
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) break;
+                }
+            }
         }
+        return bestScore;
+    }
 
-        // 2. Khôi phục quân bị ăn (nếu có) về vị trí đích
-        board.setPiece(move.getToRow(), move.getToCol(), state.capturedPiece);
-        if (state.capturedPiece != null) {
-            state.capturedPiece.setPosition(move.getToRow(), move.getToCol());
+    // Lưu kết quả một nút vào bảng chuyển vị (điểm theo bên đang đi)
+    private void storeResult(long key, int bestMove, int depth, int ply, int score, int alpha, int beta) {
+        int bound;
+        if (score >= beta) {
+            bound = TranspositionTable.BOUND_LOWER;
+        } else if (score <= alpha) {
+            bound = TranspositionTable.BOUND_UPPER;
+        } else {
+            bound = TranspositionTable.BOUND_EXACT;
         }
+        tt.store(key, bestMove, depth, bound, scoreToTable(score, ply));
+    }
 
-        // Lưu ý: Logic này đảm bảo rằng dù có phong cấp hay không, 
-        // ta luôn trả lại ĐÚNG con Tốt cũ (state.originalPiece) về ô xuất phát,
-        // và trả lại ĐÚNG con cờ bị ăn (state.capturedPiece) về ô đích.
-        // Điều này ngăn chặn việc Vua biến mất hoặc Hậu biến thành Tốt.
+    // Điểm chiếu hết lưu theo khoảng cách từ nút hiện tại, không phải từ gốc
+    private static int scoreToTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
     }
 
     // --- EVALUATION & UTILS ---
 
     private int evaluateBoard(Board board) {
-        int whiteScore = 0;
-        int blackScore = 0;
-        int pieceCount = 0;
-
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board.getPiece(r, c);
-                if (p != null) {
-                    pieceCount++;
-                    // Mặc định tính điểm Midgame
-                    int val = getPieceValue(p) + getPositionValue(p, false); 
-                    if (p.isWhite()) whiteScore += val;
-                    else blackScore += val;
+        // Điểm vật chất + vị trí được Board cập nhật dần theo từng nước đi (O(1)); trộn điểm
+        // trung cuộc và tàn cuộc theo giai đoạn ván cờ (tapered eval). Trả về theo bên đang đi.
+        int phase = board.getGamePhase();
+        int score = (board.getMidgameScore() * phase
+                + board.getEndgameScore() * (Board.TOTAL_PHASE - phase)) / Board.TOTAL_PHASE;
+        return board.isWhiteToMove() ? score : -score;
+    }
+
+    private void getAllLegalMoves(Board board, boolean isWhite, MoveList moves) {
+        LegalMoveGenerator.generate(board, isWhite, moves);
+    }
+
+    // Chấm điểm mỗi nước đi đúng một lần: nước gợi ý (bảng chuyển vị / vòng trước) >
+    // ăn quân và phong cấp theo MVV-LVA > hai nước killer > countermove > điểm lịch sử
+    private void scoreMoves(Board board, MoveList moves, int[] scores, boolean isWhite, int ply, int hashMove) {
+        int[][] sideHistory = history[isWhite ? 0 : 1];
+        int lastMove = board.getLastMadeMove();
+        int counterMove = lastMove == 0 ? 0 : counterMoves[Move.getFrom(lastMove)][Move.getTo(lastMove)];
+        int killer1 = killers[ply][0];
+        int killer2 = killers[ply][1];
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = Move.getFrom(move);
+            int to = Move.getTo(move);
+            int score;
+            if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (isCaptureOrPromotion(board, move)) {
+                // Ưu tiên ăn quân giá trị cao bằng quân giá trị thấp (MVV-LVA)
+                Piece captured = board.getPiece(to);
+                int victim = Move.getFlag(move) == Move.FLAG_EN_PASSANT ? Piece.getValue(Piece.PAWN)
+                        : captured == null ? 0 : Piece.getValue(captured.getType());
+                score = CAPTURE_SCORE + 10 * victim - Piece.getValue(board.getPiece(from).getType());
+                if (Move.isPromotion(move)) {
+                    score += Piece.getValue(Move.getPromotionType(move));
                 }
+            } else if (move == killer1) {
+                score = KILLER_SCORE;
+            } else if (move == killer2) {
+                score = KILLER_SCORE - 1;
+            } else if (move == counterMove) {
+                score = COUNTER_MOVE_SCORE;
+            } else {
+                score = sideHistory[from][to];
             }
+            scores[i] = score;
         }
-        
-        // Nếu ít quân (Endgame), tính điểm theo bảng Endgame
-        boolean isEndgame = pieceCount < 12;
-        if (isEndgame) {
-            whiteScore = 0;
-            blackScore = 0;
-            for (int r = 0; r < 8; r++) {
-                for (int c = 0; c < 8; c++) {
-                    Piece p = board.getPiece(r, c);
-                    if (p != null) {
-                        int val = getPieceValue(p) + getPositionValue(p, true);
-                        if (p.isWhite()) whiteScore += val;
-                        else blackScore += val;
-                    }
-                }
+    }
+
+    // Đưa nước có điểm cao nhất trong phần chưa xét lên vị trí index (selection sort từng
+    // bước): nút bị cắt sớm không phải trả giá sắp xếp cả danh sách
+    private static int pickNext(MoveList moves, int[] scores, int index) {
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
             }
         }
+        int move = moves.get(best);
+        if (best != index) {
+            moves.set(best, moves.get(index));
+            moves.set(index, move);
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
 
-        int score = whiteScore - blackScore;
-        return isWhiteEngine ? score : -score;
-    }
-
-    private int getPieceValue(Piece p) {
-        if (p instanceof Pawn) return PAWN_VALUE;
-        if (p instanceof Knight) return KNIGHT_VALUE;
-        if (p instanceof Bishop) return BISHOP_VALUE;
-        if (p instanceof Rook) return ROOK_VALUE;
-        if (p instanceof Queen) return QUEEN_VALUE;
-        if (p instanceof King) return KING_VALUE;
-        return 0;
-    }
-
-    private int getPositionValue(Piece p, boolean isEndgame) {
-        int r = p.getRow();
-        int c = p.getCol();
-        
-        // Bảng điểm được thiết kế cho quân Trắng (hàng 0 là phía đối thủ, hàng 7 là nhà)
-        // Nếu là quân Đen, ta lật ngược hàng lại (hàng 0 thành 7, 7 thành 0)
-        int tableRow = p.isWhite() ? r : 7 - r;
-        int tableCol = c; 
-
-        if (p instanceof Pawn) return PAWN_TABLE[tableRow][tableCol];
-        if (p instanceof Knight) return KNIGHT_TABLE[tableRow][tableCol];
-        if (p instanceof Bishop) return BISHOP_TABLE[tableRow][tableCol];
-        if (p instanceof Rook) return ROOK_TABLE[tableRow][tableCol];
-        if (p instanceof Queen) return QUEEN_TABLE[tableRow][tableCol];
-        if (p instanceof King) return isEndgame ? KING_END_TABLE[tableRow][tableCol] : KING_MID_TABLE[tableRow][tableCol];
-        
-        return 0;
-    }
-
-    private List<Move> getAllLegalMoves(Board board, boolean isWhite) {
-        List<Move> allMoves = new ArrayList<>();
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board.getPiece(r, c);
-                if (p != null && p.isWhite() == isWhite) {
-                    allMoves.addAll(p.getValidMoves(board));
+    // Nước im lặng gây cắt nhánh được ghi nhớ làm killer của tầng này, cộng điểm lịch sử
+    // (depth^2) và làm countermove cho nước vừa đi của đối thủ
+    private void recordCutoff(Board board, int move, boolean isWhite, int depth, int ply) {
+        if (isCaptureOrPromotion(board, move)) {
+            return;
+        }
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        int[][] sideHistory = history[isWhite ? 0 : 1];
+        sideHistory[Move.getFrom(move)][Move.getTo(move)] += depth * depth;
+        if (sideHistory[Move.getFrom(move)][Move.getTo(move)] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+
+        int lastMove = board.getLastMadeMove();
+        if (lastMove != 0) {
+            counterMoves[Move.getFrom(lastMove)][Move.getTo(lastMove)] = move;
+        }
+    }
+
+    // Chia đôi điểm lịch sử: giữ thứ tự tương đối nhưng để thông tin mới có trọng số hơn
+    private void ageHistory() {
+        for (int[][] sideHistory : history) {
+            for (int[] fromHistory : sideHistory) {
+                for (int to = 0; to < 64; to++) {
+                    fromHistory[to] >>= 1;
                 }
             }
         }
-        return allMoves;
-    }
-
-    private void orderMoves(Board board, List<Move> moves) {
-        moves.sort((m1, m2) -> {
-            int score1 = 0;
-            int score2 = 0;
-            
-            Piece cap1 = board.getPiece(m1.getToRow(), m1.getToCol());
-            Piece cap2 = board.getPiece(m2.getToRow(), m2.getToCol());
-            
-            Piece piece1 = board.getPiece(m1.getFromRow(), m1.getFromCol());
-            Piece piece2 = board.getPiece(m2.getFromRow(), m2.getFromCol());
-            
-            // Ưu tiên ăn quân giá trị cao bằng quân giá trị thấp (MVV-LVA)
-            if (cap1 != null && piece1 != null) score1 = 10 * getPieceValue(cap1) - getPieceValue(piece1);
-            if (cap2 != null && piece2 != null) score2 = 10 * getPieceValue(cap2) - getPieceValue(piece2);
-            
-            // Ưu tiên phong cấp
-            if (m1.getSpecialMove() == 'Q') score1 += 800;
-            if (m2.getSpecialMove() == 'Q') score2 += 800;
-            
-            return score2 - score1;
-        });
+    }
+
+    private static boolean isCaptureOrPromotion(Board board, int move) {
+        return board.getPiece(Move.getTo(move)) != null || Move.getFlag(move) == Move.FLAG_EN_PASSANT
+                || Move.isPromotion(move);
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.chess.engine;
+
+import com.chess.core.Board;
+
+// Lazy SMP speed-up check: searches a fixed set of positions to a fixed depth with one
+// thread and with N threads (fresh hash table each run) and compares the wall time.
+// Run with: java com.chess.engine.SmpBenchmark [threads] [depth]
+public final class SmpBenchmark {
+    private static final int HASH_MB = 64;
+
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+    };
+
+    private SmpBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.printf("%d threads vs 1, depth %d, %d cores%n", threads, depth,
+                Runtime.getRuntime().availableProcessors());
+
+        JavaChessEngine single = new JavaChessEngine(HASH_MB);
+        JavaChessEngine multi = new JavaChessEngine(HASH_MB);
+        multi.setThreadCount(threads);
+
+        // Warm up the JIT so the first configuration measured is not penalised
+        for (String fen : POSITIONS) {
+            time(single, fen, depth);
+            time(multi, fen, depth);
+        }
+
+        long singleTotal = 0;
+        long multiTotal = 0;
+        for (String fen : POSITIONS) {
+            long singleNanos = time(single, fen, depth);
+            long singleNodes = single.getNodeCount();
+            long multiNanos = time(multi, fen, depth);
+            long multiNodes = multi.getNodeCount();
+            singleTotal += singleNanos;
+            multiTotal += multiNanos;
+
+            System.out.println(fen);
+            System.out.printf("  1 thread:  %8.1f ms %10.0f nps%n", singleNanos / 1e6,
+                    nodesPerSecond(singleNodes, singleNanos));
+            System.out.printf("  %d threads: %8.1f ms %10.0f nps  speed-up %.2fx%n", threads, multiNanos / 1e6,
+                    nodesPerSecond(multiNodes, multiNanos), (double) singleNanos / multiNanos);
+        }
+        System.out.printf("Total: 1 thread %.1f ms, %d threads %.1f ms, speed-up %.2fx%n", singleTotal / 1e6,
+                threads, multiTotal / 1e6, (double) singleTotal / multiTotal);
+        multi.shutdown();
+    }
+
+    private static long time(JavaChessEngine engine, String fen, int depth) {
+        engine.clearHash();
+        Board board = Board.fromFEN(fen);
+        long start = System.nanoTime();
+        engine.getBestMove(board, depth);
+        return System.nanoTime() - start;
+    }
+
+    private static double nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+}
@@ -2,6 +2,7 @@ package com.chess.engine;
 
 import java.io.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class StockfishEngine {
     private Process engineProcess;
@@ -13,6 +14,13 @@ public class StockfishEngine {
     private final BlockingQueue<String> outputQueue = new LinkedBlockingQueue<>();
     private volatile boolean isRunning = false;
 
+    // Ponder: Stockfish đang tìm trên thời gian của đối thủ ("go ponder")
+    private volatile boolean pondering = false;
+    private volatile String ponderMove; // nước đáp dự đoán từ "bestmove ... ponder <move>" gần nhất
+    // Số dòng "bestmove" của các lần ponder đã bỏ còn chưa tới; luồng đọc bỏ qua chúng để
+    // stopPondering() không phải chờ
+    private final AtomicInteger staleBestMoves = new AtomicInteger();
+
     public StockfishEngine() throws IOException {
         startEngine();
     }
@@ -31,6 +39,7 @@ public class StockfishEngine {
         processWriter = new BufferedWriter(new OutputStreamWriter(engineProcess.getOutputStream()));
 
         isRunning = true;
+        staleBestMoves.set(0);
         readerThread = new Thread(this::readOutputLoop);
         readerThread.setDaemon(true);
         readerThread.start();
@@ -40,6 +49,7 @@ public class StockfishEngine {
             throw new IOException("Stockfish failed to initialize (no uciok)");
         }
 
+        sendCommand("setoption name Ponder value true");
         sendCommand("ucinewgame");
         sendCommand("isready");
         if (waitForResponse("readyok", 5000) == null) {
@@ -52,6 +62,9 @@ public class StockfishEngine {
             String line;
             while (isRunning && (line = processReader.readLine()) != null) {
                 String trimmed = line.trim();
+                if (trimmed.startsWith("bestmove") && staleBestMoves.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    continue;
+                }
                 if (trimmed.startsWith("bestmove") || trimmed.equals("readyok") || trimmed.equals("uciok")) {
                     outputQueue.offer(trimmed);
                 }
@@ -84,9 +97,7 @@ public class StockfishEngine {
             restart();
         }
         outputQueue.clear();
-
-        // Thời gian suy nghĩ tăng theo độ khó
-        int moveTimeMs = Math.min(3000, 50 + (searchDepth * 100));
+        int moveTimeMs = getMoveTime(searchDepth);
 
         try {
             sendCommand("position fen " + fen);
@@ -96,6 +107,72 @@ public class StockfishEngine {
             throw e;
         }
 
+        return readBestMove(moveTimeMs);
+    }
+
+    // Ponder: tìm thế cờ sau nước đáp dự đoán ponderMove (từ thế fen) trong lúc đối thủ suy
+    // nghĩ, cho tới khi ponderHit() hoặc stopPondering()
+    public void startPondering(String fen, String ponderMove, int searchDepth) throws IOException {
+        stopPondering();
+        if (engineProcess == null || !engineProcess.isAlive()) {
+            return;
+        }
+        outputQueue.clear();
+        sendCommand("position fen " + fen + " moves " + ponderMove);
+        sendCommand("go ponder movetime " + getMoveTime(searchDepth));
+        pondering = true;
+    }
+
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    // Đối thủ đi đúng nước dự đoán: "ponderhit" chuyển Stockfish sang tìm bình thường.
+    // movetime được tính từ lúc "go ponder", nên nếu đã ponder đủ lâu thì trả lời ngay.
+    // Trả về null nếu không có lần ponder nào đang chạy.
+    public String ponderHit(int searchDepth) throws IOException {
+        if (!takePondering()) {
+            return null;
+        }
+        try {
+            sendCommand("ponderhit");
+        } catch (IOException e) {
+            restart();
+            throw e;
+        }
+        return readBestMove(getMoveTime(searchDepth));
+    }
+
+    // Đối thủ đi nước khác: dừng ponder và bỏ nước đi Stockfish trả về. Không chờ "bestmove"
+    // (luồng đọc tự bỏ nó), nên gọi được từ luồng giao diện
+    public void stopPondering() {
+        if (!takePondering()) {
+            return;
+        }
+        staleBestMoves.incrementAndGet();
+        try {
+            sendCommand("stop");
+        } catch (IOException e) {
+        }
+    }
+
+    public String getPonderMove() {
+        return ponderMove;
+    }
+
+    private synchronized boolean takePondering() {
+        boolean wasPondering = pondering;
+        pondering = false;
+        return wasPondering;
+    }
+
+    // Thời gian suy nghĩ tăng theo độ khó
+    private int getMoveTime(int searchDepth) {
+        return Math.min(3000, 50 + (searchDepth * 100));
+    }
+
+    // Chờ dòng "bestmove <move> [ponder <move>]", ghi nhớ nước ponder và trả về nước đi
+    private String readBestMove(int moveTimeMs) throws IOException {
         String response = waitForResponse("bestmove", moveTimeMs + 3000);
         if (response == null) {
             try {
@@ -110,6 +187,7 @@ public class StockfishEngine {
         }
 
         String[] parts = response.split(" ");
+        ponderMove = parts.length > 3 && parts[2].equals("ponder") ? parts[3] : null;
         return parts.length > 1 ? parts[1] : null;
     }
 
@@ -126,6 +204,7 @@ public class StockfishEngine {
     }
 
     public void close() {
+        pondering = false;
         isRunning = false;
         if (processWriter != null) {
             try {
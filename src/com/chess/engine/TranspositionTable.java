@@ -0,0 +1,117 @@
+package com.chess.engine;
+
+// Fixed-size hash table of search results, shared lock-free between search threads.
+//
+// Each entry is two longs: (key ^ data) and data. A reader accepts an entry only if
+// the two XOR back to the probed key, so a write torn by another thread reads as a
+// miss instead of returning another position's data. Entries live in buckets of two;
+// a store overwrites the slot with the same key, otherwise the shallower or older one.
+public class TranspositionTable {
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2; // score >= stored score (fail high)
+    public static final int BOUND_UPPER = 3; // score <= stored score (fail low)
+
+    // data layout: bits 0-15 move, 16-23 depth, 24-25 bound, 26-31 age, 32-63 score
+    private static final int DEPTH_SHIFT = 16;
+    private static final int BOUND_SHIFT = 24;
+    private static final int AGE_SHIFT = 26;
+    private static final int SCORE_SHIFT = 32;
+    private static final int AGE_MASK = 0x3F;
+
+    private static final int LONGS_PER_ENTRY = 2;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final int BYTES_PER_BUCKET = 8 * LONGS_PER_ENTRY * ENTRIES_PER_BUCKET;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    public TranspositionTable(int sizeMb) {
+        long buckets = Math.max(1, (long) sizeMb * 1024 * 1024 / BYTES_PER_BUCKET);
+        // Round down to a power of two so the key can be masked into an index
+        int bucketCount = Integer.highestOneBit((int) Math.min(buckets, 1 << 26));
+        table = new long[bucketCount * LONGS_PER_ENTRY * ENTRIES_PER_BUCKET];
+        bucketMask = bucketCount - 1;
+    }
+
+    // Start a new search: entries from earlier searches become preferred victims
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+        age = 0;
+    }
+
+    // Entry data for the key, or 0 if the position is not stored
+    public long probe(long key) {
+        int base = bucketIndex(key);
+        for (int i = 0; i < ENTRIES_PER_BUCKET; i++) {
+            int slot = base + i * LONGS_PER_ENTRY;
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int move, int depth, int bound, int score) {
+        int base = bucketIndex(key);
+        int currentAge = age;
+
+        // Prefer the slot already holding this position, else the least valuable one
+        int victim = -1;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int i = 0; i < ENTRIES_PER_BUCKET; i++) {
+            int slot = base + i * LONGS_PER_ENTRY;
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                // Keep the old best move if this search did not produce one
+                if (move == 0) {
+                    move = getMove(data);
+                }
+                victim = slot;
+                break;
+            }
+            int worth = data == 0 ? -1 : getDepth(data) + (getAge(data) == currentAge ? 256 : 0);
+            if (worth < victimWorth) {
+                victimWorth = worth;
+                victim = slot;
+            }
+        }
+
+        long data = (move & 0xFFFFL)
+                | ((long) depth << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) currentAge << AGE_SHIFT)
+                | ((long) score << SCORE_SHIFT);
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    private int bucketIndex(long key) {
+        return (int) (key & bucketMask) * LONGS_PER_ENTRY * ENTRIES_PER_BUCKET;
+    }
+
+    public static int getMove(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int getAge(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    public static int getScore(long data) {
+        return (int) (data >> SCORE_SHIFT);
+    }
+}
@@ -17,6 +17,7 @@ public class BoardPanel extends JPanel {
     private ComputerPlayer computer;
     private boolean vsComputer;
     private int engineType;
+    private int difficultyLevel;
     private boolean playerIsWhite;
     private Timer computerMoveTimer;
     private String whiteName;
@@ -99,6 +100,7 @@ public class BoardPanel extends JPanel {
             int timeControlMinutes, boolean playerIsWhite) {
         this.vsComputer = vsComputer;
         this.engineType = engineType;
+        this.difficultyLevel = difficultyLevel;
         this.playerIsWhite = playerIsWhite;
         this.whiteName = whiteName;
         this.blackName = blackName;
@@ -123,18 +125,26 @@ public class BoardPanel extends JPanel {
     }
 
     private void makeComputerMove() {
-        if (!game.isGameOver() && game.isWhiteTurn() != playerIsWhite) {
+        if (computer != null && !game.isGameOver() && game.isWhiteTurn() != playerIsWhite) {
+            // Search a copy taken here on the EDT, so repaints and resets can't race the engine
+            final ComputerPlayer player = computer;
+            final Game searchedGame = game;
+            final Board position = game.getBoard().snapshot();
+            game.updateTime();
+            final long timeRemaining = game.getTimeRemaining(game.isWhiteTurn());
             SwingWorker<Move, Void> worker = new SwingWorker<Move, Void>() {
                 @Override
                 protected Move doInBackground() throws Exception {
-                    return computer.getMove(game);
+                    return player.getMove(position, timeRemaining);
                 }
 
                 @Override
                 protected void done() {
                     try {
                         Move computerMove = get();
-                        if (computerMove != null) {
+                        // Drop the result if the game was reset or the panel disposed while the
+                        // engine was thinking
+                        if (computerMove != null && searchedGame == game && player == computer) {
                             game.makeMove(computerMove);
                             updateSquare(computerMove.getFromRow(), computerMove.getFromCol());
                             updateSquare(computerMove.getToRow(), computerMove.getToCol());
@@ -151,6 +161,10 @@ public class BoardPanel extends JPanel {
                             }
                             resetSquareColors();
                             handleGameStatus();
+                            // Keep thinking on the player's time about their expected reply
+                            if (searchedGame == game && computer != null && !game.isGameOver()) {
+                                computer.startPondering(game.getBoard().snapshot());
+                            }
                         }
                     } catch (Exception e) {
                         e.printStackTrace();
@@ -215,8 +229,8 @@ public class BoardPanel extends JPanel {
                             isDragging = true;
                             // Piece piece = game.getBoard().getPiece(dragStartRow, dragStartCol); //
                             // Removed duplicate declaration
-                            if (piece != null && piece.getIcon() != null) {
-                                dragLabel = new JLabel(piece.getIcon());
+                            if (PieceIcons.get(piece) != null) {
+                                dragLabel = new JLabel(PieceIcons.get(piece));
                                 dragLabel.setSize(squares[dragStartRow][dragStartCol].getSize());
 
                                 JLayeredPane layeredPane = getRootPane().getLayeredPane();
@@ -332,8 +346,9 @@ public class BoardPanel extends JPanel {
 
     private void updateSquare(int row, int col) {
         Piece piece = game.getBoard().getPiece(row, col);
-        if (piece != null && piece.getIcon() != null) {
-            squares[row][col].setIcon(piece.getIcon());
+        ImageIcon icon = PieceIcons.get(piece);
+        if (icon != null) {
+            squares[row][col].setIcon(icon);
             squares[row][col].setText("");
         } else {
             squares[row][col].setIcon(null);
@@ -375,22 +390,22 @@ public class BoardPanel extends JPanel {
     private void selectSquare(int row, int col) {
         selectedSquare = squares[row][col];
         selectedSquare.setBackground(Color.YELLOW);
-        Piece piece = game.getBoard().getPiece(row, col);
-        if (piece != null) {
-            List<Move> validMoves = piece.getValidMoves(game.getBoard());
-            for (Move move : validMoves) {
-                int moveRow = move.getToRow();
-                int moveCol = move.getToCol();
-
-                boolean isCapture = game.getBoard().getPiece(moveRow, moveCol) != null || move.getSpecialMove() == 'E';
-                ImageIcon overlayIcon = new ImageIcon(isCapture ? createRingImage() : createDotImage());
-
-                Icon currentIcon = squares[moveRow][moveCol].getIcon();
-                if (currentIcon != null)
-                    squares[moveRow][moveCol].setIcon(new LayeredIcon(currentIcon, overlayIcon));
-                else
-                    squares[moveRow][moveCol].setIcon(overlayIcon);
-            }
+        Board board = game.getBoard();
+        MoveList validMoves = new MoveList(32);
+        LegalMoveGenerator.generateFrom(board, row * 8 + col, validMoves);
+        for (int i = 0; i < validMoves.size(); i++) {
+            int move = validMoves.get(i);
+            int moveRow = Move.getTo(move) / 8;
+            int moveCol = Move.getTo(move) % 8;
+
+            boolean isCapture = board.getPiece(moveRow, moveCol) != null || Move.getFlag(move) == Move.FLAG_EN_PASSANT;
+            ImageIcon overlayIcon = new ImageIcon(isCapture ? createRingImage() : createDotImage());
+
+            Icon currentIcon = squares[moveRow][moveCol].getIcon();
+            if (currentIcon != null)
+                squares[moveRow][moveCol].setIcon(new LayeredIcon(currentIcon, overlayIcon));
+            else
+                squares[moveRow][moveCol].setIcon(overlayIcon);
         }
     }
 
@@ -450,8 +465,13 @@ public class BoardPanel extends JPanel {
             }
             resetSquareColors();
             handleGameStatus();
-            if (vsComputer && !game.isGameOver())
-                computerMoveTimer.start();
+            if (vsComputer && !game.isGameOver()) {
+                // A running ponder search may already have the reply, so skip the delay
+                if (computer != null && computer.isPondering())
+                    makeComputerMove();
+                else
+                    computerMoveTimer.start();
+            }
         } else
             deselect();
         selectedSquare = null;
@@ -465,8 +485,7 @@ public class BoardPanel extends JPanel {
         final char[] result = new char[1];
         result[0] = 'Q'; // Default
 
-        String colorPrefix = isWhite ? "white" : "black";
-        String[] pieces = { "queen", "rook", "bishop", "knight" };
+        int[] pieces = { Piece.QUEEN, Piece.ROOK, Piece.BISHOP, Piece.KNIGHT };
         char[] codes = { 'Q', 'R', 'B', 'N' };
 
         JButton[] promoButtons = new JButton[4];
@@ -478,8 +497,7 @@ public class BoardPanel extends JPanel {
             promoButtons[i].setFocusPainted(false);
             promoButtons[i].setBorder(BorderFactory.createLineBorder(Color.GRAY));
 
-            String path = "resources/image/pieces/" + colorPrefix + "_" + pieces[i] + ".png";
-            promoButtons[i].setIcon(new ImageIcon(path));
+            promoButtons[i].setIcon(PieceIcons.get(pieces[i], isWhite));
 
             promoButtons[i].addActionListener(e -> {
                 result[0] = codes[index];
@@ -547,7 +565,27 @@ public class BoardPanel extends JPanel {
         }
     }
 
+    // Stop the computer player for good: ends any ponder search and shuts down its engine
+    // (the Stockfish process, search threads). Called when the panel is replaced or the
+    // game ends; resetBoard() starts a new one if the panel is played again.
+    public void dispose() {
+        if (computerMoveTimer != null) {
+            computerMoveTimer.stop();
+        }
+        if (computer != null) {
+            computer.stopPondering();
+            computer.close();
+            computer = null;
+        }
+    }
+
     public void resetBoard() {
+        if (vsComputer) {
+            if (computer == null) {
+                computer = new ComputerPlayer(engineType, difficultyLevel);
+            }
+            computer.stopPondering();
+        }
         stopCheckBlink();
         selectedSquare = null;
         removeAll();
@@ -571,22 +609,10 @@ public class BoardPanel extends JPanel {
     }
 
     private void highlightKingInCheck() {
-        boolean whiteTurn = game.isWhiteTurn();
-        Piece king = null;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = game.getBoard().getPiece(r, c);
-                if (p instanceof King && p.isWhite() == whiteTurn) {
-                    king = p;
-                    kingRow = r;
-                    kingCol = c;
-                    break;
-                }
-            }
-            if (king != null)
-                break;
-        }
-        if (king != null) {
+        int kingSquare = game.getBoard().getKingSquare(game.isWhiteTurn());
+        if (kingSquare != -1) {
+            kingRow = kingSquare / 8;
+            kingCol = kingSquare % 8;
             if (checkBlinkTimer != null && checkBlinkTimer.isRunning())
                 checkBlinkTimer.stop();
             blinkCount = 0;
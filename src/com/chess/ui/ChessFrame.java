@@ -27,12 +27,21 @@ public class ChessFrame extends JFrame {
         if (gameTimer != null && gameTimer.isRunning()) {
             gameTimer.stop();
         }
+        disposeBoardPanel();
         getContentPane().removeAll();
         getContentPane().add(menuPanel);
         validate();
         repaint();
     }
 
+    // Stop the old game's engine (ponder search, Stockfish process) before its panel goes
+    private void disposeBoardPanel() {
+        if (boardPanel != null) {
+            boardPanel.dispose();
+            boardPanel = null;
+        }
+    }
+
     public void switchPanel(JPanel panel) {
         getContentPane().removeAll();
         currentPanel = panel;
@@ -53,6 +62,7 @@ public class ChessFrame extends JFrame {
         if (gameTimer != null && gameTimer.isRunning()) {
             gameTimer.stop();
         }
+        disposeBoardPanel();
 
         JPanel gameContainer = new JPanel(new BorderLayout());
 
@@ -110,6 +120,7 @@ public class ChessFrame extends JFrame {
                 if (g.isGameOver()) {
                     if (g.isTimedGame() && (g.getWhiteTimeRemaining() == 0 || g.getBlackTimeRemaining() == 0)) {
                         ((Timer) e.getSource()).stop();
+                        boardPanel.dispose();
                         String winner = g.getWhiteTimeRemaining() == 0 ? blackName : whiteName;
                         JOptionPane.showMessageDialog(this, "Time's up! " + winner + " wins!");
                     }
@@ -0,0 +1,38 @@
+package com.chess.ui;
+
+import java.awt.MediaTracker;
+import javax.swing.ImageIcon;
+import com.chess.core.Piece;
+
+// Shared piece sprites: each image is decoded from disk once and reused by every
+// square, drag label and promotion button, so pieces themselves carry no UI state
+public final class PieceIcons {
+    private static final String[] NAMES = { "pawn", "knight", "bishop", "rook", "queen", "king" };
+
+    // Indexed like Board bitboards: Piece.getIndex()
+    private static final ImageIcon[] ICONS = new ImageIcon[12];
+
+    static {
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            ICONS[type] = load("white", NAMES[type]);
+            ICONS[type + Piece.COLOR_OFFSET] = load("black", NAMES[type]);
+        }
+    }
+
+    private PieceIcons() {
+    }
+
+    // Icon for a piece, or null if its sprite could not be loaded
+    public static ImageIcon get(Piece piece) {
+        return piece == null ? null : ICONS[piece.getIndex()];
+    }
+
+    public static ImageIcon get(int pieceType, boolean isWhite) {
+        return ICONS[isWhite ? pieceType : pieceType + Piece.COLOR_OFFSET];
+    }
+
+    private static ImageIcon load(String color, String name) {
+        ImageIcon icon = new ImageIcon("resources/image/pieces/" + color + "_" + name + ".png");
+        return icon.getImageLoadStatus() == MediaTracker.COMPLETE ? icon : null;
+    }
+}